@@ -0,0 +1,19 @@
+package com.k3rnl.hdfs.fuse.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Reported by JMH as a rate, so {@code bytes} shows up as bytes/s next to ops/s.
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.OPERATIONS)
+public class ByteCounters {
+
+    public long bytes;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+        bytes = 0;
+    }
+
+}
@@ -0,0 +1,34 @@
+package com.k3rnl.hdfs.fuse.benchmarks;
+
+import java.util.Arrays;
+
+/**
+ * Every latency recorded for one operation type, kept in full so percentiles are exact.
+ */
+final class Latencies {
+
+    private long[] nanos = new long[1024];
+    private int count;
+
+    synchronized void record(long value) {
+        if (count == nanos.length) {
+            nanos = Arrays.copyOf(nanos, nanos.length * 2);
+        }
+        nanos[count++] = value;
+    }
+
+    synchronized int count() {
+        return count;
+    }
+
+    synchronized long percentile(double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        long[] sorted = Arrays.copyOf(nanos, count);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile / 100 * count) - 1;
+        return sorted[Math.max(index, 0)];
+    }
+
+}
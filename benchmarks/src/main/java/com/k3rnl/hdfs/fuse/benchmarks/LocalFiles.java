@@ -0,0 +1,49 @@
+package com.k3rnl.hdfs.fuse.benchmarks;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.RawLocalFileSystem;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.util.Random;
+
+final class LocalFiles {
+
+    static final long FILE_SIZE = 256L * 1024 * 1024;
+
+    private LocalFiles() {
+    }
+
+    static FileSystem rawLocalFileSystem() throws IOException {
+        FileSystem fs = new RawLocalFileSystem();
+        fs.initialize(URI.create("file:///"), new Configuration());
+        return fs;
+    }
+
+    static Path createTempDir() throws IOException {
+        return new Path(Files.createTempDirectory("hdfs-fuse-bench").toUri());
+    }
+
+    static Path createFile(FileSystem fs, Path dir, long size) throws IOException {
+        Path file = new Path(dir, "data.bin");
+        byte[] chunk = new byte[1024 * 1024];
+        new Random(42).nextBytes(chunk);
+        try (var out = fs.create(file, true)) {
+            for (long written = 0; written < size; written += chunk.length) {
+                out.write(chunk, 0, (int) Math.min(chunk.length, size - written));
+            }
+        }
+        return file;
+    }
+
+    /**
+     * Path as HdfsFuseOperations receives it from the kernel.
+     */
+    static String fusePath(Path path) {
+        return path.toUri().getPath();
+    }
+
+}
@@ -0,0 +1,96 @@
+package com.k3rnl.hdfs.fuse.benchmarks;
+
+import com.k3rnl.fuse.libc.OpenFlags;
+import com.k3rnl.hdfs.fuse.HdfsFuseOperations;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link HdfsFuseOperations#read} as called by the FUSE loop, including the copy into the kernel buffer.
+ * The concurrent benchmark shares a single handle between all the reader threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class ReadPathBenchmark {
+
+    @Param({"4096", "131072", "1048576"})
+    int requestSize;
+
+    FileSystem fs;
+    Path dir;
+    String path;
+    HdfsFuseOperations ops;
+    long handle;
+
+    @State(Scope.Thread)
+    public static class Reader {
+        final byte[] buf = new byte[1024 * 1024];
+        final SplittableRandom random = new SplittableRandom(Thread.currentThread().threadId());
+        long position;
+    }
+
+    @Setup(Level.Trial)
+    public void createFile() throws IOException {
+        fs = LocalFiles.rawLocalFileSystem();
+        dir = LocalFiles.createTempDir();
+        path = LocalFiles.fusePath(LocalFiles.createFile(fs, dir, LocalFiles.FILE_SIZE));
+        ops = new HdfsFuseOperations(fs);
+    }
+
+    @Setup(Level.Iteration)
+    public void open() {
+        handle = ops.open(path, OpenFlags.O_RDONLY);
+        if (handle < 0) {
+            throw new IllegalStateException("open failed: " + handle);
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void release() {
+        ops.release(path, handle);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteFile() throws IOException {
+        fs.delete(dir, true);
+        fs.close();
+    }
+
+    private int readAt(Reader reader, long offset, ByteCounters counters) {
+        int read = ops.read(path, reader.buf, requestSize, offset, handle);
+        counters.bytes += Math.max(read, 0);
+        return read;
+    }
+
+    @Benchmark
+    public int sequential(Reader reader, ByteCounters counters) {
+        if (reader.position + requestSize > LocalFiles.FILE_SIZE) {
+            reader.position = 0;
+        }
+        int read = readAt(reader, reader.position, counters);
+        reader.position += requestSize;
+        return read;
+    }
+
+    @Benchmark
+    public int random(Reader reader, ByteCounters counters) {
+        long offset = reader.random.nextLong(LocalFiles.FILE_SIZE / requestSize) * requestSize;
+        return readAt(reader, offset, counters);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public int concurrentRandom(Reader reader, ByteCounters counters) {
+        return random(reader, counters);
+    }
+
+}
@@ -0,0 +1,122 @@
+package com.k3rnl.hdfs.fuse.benchmarks;
+
+import com.k3rnl.hdfs.fuse.SeekableBufferedInputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Access patterns on a {@link SeekableBufferedInputStream} configured like the one opened by
+ * HdfsFuseOperations, on top of a local file. {@code requestSize} matches common FUSE read sizes.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class SeekableBufferedInputStreamBenchmark {
+
+    private static final int STRIDE = 8;
+
+    @Param({"4096", "131072", "1048576"})
+    int requestSize;
+
+    FileSystem fs;
+    Path dir;
+    Path file;
+    byte[] buf;
+
+    SeekableBufferedInputStream in;
+    SplittableRandom random;
+    long position;
+    long backPosition;
+    boolean forward;
+
+    @Setup(Level.Trial)
+    public void createFile() throws IOException {
+        fs = LocalFiles.rawLocalFileSystem();
+        dir = LocalFiles.createTempDir();
+        file = LocalFiles.createFile(fs, dir, LocalFiles.FILE_SIZE);
+        buf = new byte[requestSize];
+    }
+
+    @Setup(Level.Iteration)
+    public void open() throws IOException {
+        in = new SeekableBufferedInputStream(fs.open(file), 2048 * 1024, 20);
+        random = new SplittableRandom(42);
+        position = 0;
+        backPosition = LocalFiles.FILE_SIZE - requestSize;
+        forward = true;
+    }
+
+    @TearDown(Level.Iteration)
+    public void close() throws IOException {
+        in.close();
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteFile() throws IOException {
+        fs.delete(dir, true);
+        fs.close();
+    }
+
+    private int readAt(long offset, ByteCounters counters) throws IOException {
+        in.seek(offset);
+        int read = in.readNBytes(buf, 0, requestSize);
+        counters.bytes += Math.max(read, 0);
+        return read;
+    }
+
+    @Benchmark
+    public int sequential(ByteCounters counters) throws IOException {
+        if (position + requestSize > LocalFiles.FILE_SIZE) {
+            position = 0;
+        }
+        int read = readAt(position, counters);
+        position += requestSize;
+        return read;
+    }
+
+    @Benchmark
+    public int strided(ByteCounters counters) throws IOException {
+        if (position + requestSize > LocalFiles.FILE_SIZE) {
+            position = 0;
+        }
+        int read = readAt(position, counters);
+        position += (long) requestSize * STRIDE;
+        return read;
+    }
+
+    @Benchmark
+    public int random(ByteCounters counters) throws IOException {
+        long offset = random.nextLong(LocalFiles.FILE_SIZE / requestSize) * requestSize;
+        return readAt(offset, counters);
+    }
+
+    /**
+     * Alternates between a cursor moving forward from the start and one moving backward from the end,
+     * so every read is a long seek.
+     */
+    @Benchmark
+    public int seekHeavy(ByteCounters counters) throws IOException {
+        if (position >= backPosition) {
+            position = 0;
+            backPosition = LocalFiles.FILE_SIZE - requestSize;
+        }
+        forward = !forward;
+        if (forward) {
+            int read = readAt(position, counters);
+            position += requestSize;
+            return read;
+        }
+        int read = readAt(backPosition, counters);
+        backPosition -= requestSize;
+        return read;
+    }
+
+}
@@ -0,0 +1,102 @@
+package com.k3rnl.hdfs.fuse.benchmarks;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hdfs.HdfsConfiguration;
+import org.apache.hadoop.hdfs.MiniDFSCluster;
+import picocli.CommandLine;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.stream.Collectors;
+
+/**
+ * Measures how long a new process takes to be ready to mount and to answer its first getattr,
+ * against a local {@link MiniDFSCluster}. Every run starts a fresh JVM running {@link StartupProbe}.
+ * <p>
+ * Prints one JSON line per startup mode with the p50 of both times.
+ */
+@Command(name = "startup-benchmark", mixinStandardHelpOptions = true,
+        description = "Measure the time to mount and to the first getattr in a fresh JVM")
+public class StartupBenchmark implements Callable<Integer> {
+
+    @Option(names = {"--label"}, description = "label identifying this run in the results, e.g. the version under test", defaultValue = "dev")
+    private String label;
+
+    @Option(names = {"--runs"}, description = "JVMs started per mode, default is 10", defaultValue = "10")
+    private int runs;
+
+    @Option(names = {"--modes"}, split = ",", description = "startup modes to compare, default is ${DEFAULT-VALUE}", defaultValue = "eager,lazy")
+    private List<String> modes;
+
+    @Override
+    public Integer call() throws Exception {
+        var baseDir = Files.createTempDirectory("hdfs-fuse-startup");
+        Configuration conf = new HdfsConfiguration();
+        conf.set(MiniDFSCluster.HDFS_MINIDFS_BASEDIR, baseDir.toString());
+
+        MiniDFSCluster cluster = new MiniDFSCluster.Builder(conf).numDataNodes(1).build();
+        try {
+            cluster.waitActive();
+            String server = cluster.getURI().toString();
+            for (var mode : modes) {
+                var ready = new Latencies();
+                var firstGetattr = new Latencies();
+                for (int i = 0; i < runs; i++) {
+                    long[] times = probe(mode, server);
+                    ready.record(times[0]);
+                    firstGetattr.record(times[1]);
+                }
+                System.out.println("{\"label\":\"" + label.replace("\\", "\\\\").replace("\"", "\\\"") + "\""
+                        + ",\"mode\":\"" + mode + "\""
+                        + ",\"runs\":" + runs
+                        + ",\"readyP50Millis\":" + ready.percentile(50)
+                        + ",\"firstGetattrP50Millis\":" + firstGetattr.percentile(50) + "}");
+            }
+        } finally {
+            cluster.shutdown(true);
+        }
+        return 0;
+    }
+
+    private long[] probe(String mode, String server) throws IOException, InterruptedException {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        Process process = new ProcessBuilder(java, "-cp", classPath(), StartupProbe.class.getName(), mode, server)
+                .redirectError(ProcessBuilder.Redirect.DISCARD)
+                .start();
+        String output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8).trim();
+        if (process.waitFor() != 0 || output.isEmpty()) {
+            throw new IOException("Startup probe failed in " + mode + " mode");
+        }
+        // the probe prints its two times on the last line, after anything Hadoop may have printed
+        String[] lines = output.split("\n");
+        return Arrays.stream(lines[lines.length - 1].trim().split(" ")).mapToLong(Long::parseLong).toArray();
+    }
+
+    /**
+     * The class path of this benchmark, also when it runs from {@code mvn exec:java} in a class loader of its own.
+     */
+    private static String classPath() {
+        if (Thread.currentThread().getContextClassLoader() instanceof URLClassLoader loader && loader.getURLs().length > 0) {
+            List<String> entries = new ArrayList<>();
+            for (var url : loader.getURLs()) {
+                entries.add(new File(url.getPath()).getPath());
+            }
+            return entries.stream().collect(Collectors.joining(File.pathSeparator));
+        }
+        return System.getProperty("java.class.path");
+    }
+
+    public static void main(String[] args) {
+        System.exit(new CommandLine(new StartupBenchmark()).execute(args));
+    }
+
+}
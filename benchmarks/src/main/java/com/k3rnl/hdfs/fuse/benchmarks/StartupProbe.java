@@ -0,0 +1,51 @@
+package com.k3rnl.hdfs.fuse.benchmarks;
+
+import com.k3rnl.hdfs.fuse.ConcurrencyLimiter;
+import com.k3rnl.hdfs.fuse.GroupCommitFlusher;
+import com.k3rnl.hdfs.fuse.HdfsFuseOperations;
+import com.k3rnl.hdfs.fuse.NameNodeConnection;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.hdfs.HdfsConfiguration;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Started in a fresh JVM by {@link StartupBenchmark}: builds {@link HdfsFuseOperations} the way {@code Main} does
+ * and prints, in milliseconds since the JVM started, when the mount could be made and when the first
+ * getattr returned.
+ * <p>
+ * {@code lazy} connects in the background like {@code Main}, {@code eager} connects before building the operations.
+ */
+final class StartupProbe {
+
+    private StartupProbe() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        boolean lazy = args[0].equals("lazy");
+        String server = args[1];
+        long start = ManagementFactory.getRuntimeMXBean().getStartTime();
+
+        NameNodeConnection.Connect connect = () -> {
+            Configuration conf = new HdfsConfiguration();
+            conf.set("fs.defaultFS", server);
+            return FileSystem.newInstance(conf);
+        };
+        var connection = lazy ? NameNodeConnection.start(connect) : CompletableFuture.completedFuture(connect.connect());
+        var ops = new HdfsFuseOperations(connection, Duration.ofSeconds(30), ConcurrencyLimiter.unlimited(),
+                GroupCommitFlusher.perCall(GroupCommitFlusher.Durability.HFLUSH));
+        long ready = System.currentTimeMillis() - start;
+
+        if (ops.getattr("/", status -> {}) != 0) {
+            System.exit(1);
+        }
+        long firstGetattr = System.currentTimeMillis() - start;
+
+        System.out.println(ready + " " + firstGetattr);
+        System.exit(0);
+    }
+
+}
@@ -0,0 +1,513 @@
+package com.k3rnl.hdfs.fuse.benchmarks;
+
+import com.k3rnl.fuse.libc.OpenFlags;
+import com.k3rnl.hdfs.fuse.ConcurrencyLimiter;
+import com.k3rnl.hdfs.fuse.FuseOp;
+import com.k3rnl.hdfs.fuse.GroupCommitFlusher;
+import com.k3rnl.hdfs.fuse.HdfsFuseOperations;
+import com.k3rnl.hdfs.fuse.HedgedReadFileSystem;
+import com.k3rnl.hdfs.fuse.ShardedFileSystem;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hdfs.DFSConfigKeys;
+import org.apache.hadoop.hdfs.DistributedFileSystem;
+import org.apache.hadoop.hdfs.HdfsConfiguration;
+import org.apache.hadoop.hdfs.MiniDFSCluster;
+import org.apache.hadoop.metrics2.*;
+import org.apache.hadoop.metrics2.lib.DefaultMetricsSystem;
+import picocli.CommandLine;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Replays file system workloads on {@link HdfsFuseOperations} backed by a local {@link MiniDFSCluster},
+ * the same sequence of callbacks the kernel would make, without mounting anything.
+ * <p>
+ * Each workload prints one JSON line with its wall time, the RPCs received by the NameNode
+ * and the p50/p99 latency of every FUSE callback it made.
+ */
+@Command(name = "workload-benchmark", mixinStandardHelpOptions = true,
+        description = "Run end-to-end workloads against HdfsFuseOperations on a MiniDFSCluster")
+public class WorkloadBenchmark implements Callable<Integer> {
+
+    private static final int COPY_CHUNK = 128 * 1024;
+    private static final int SMALL_FILES_PER_DIR = 1000;
+
+    @FunctionalInterface
+    interface FuseCall {
+        long call() throws IOException;
+    }
+
+    @Option(names = {"--label"}, description = "label identifying this run in the results, e.g. the version under test", defaultValue = "dev")
+    private String label;
+
+    @Option(names = {"--output"}, description = "append the results to this file instead of printing them")
+    private java.nio.file.Path output;
+
+    @Option(names = {"--workloads"}, split = ",", description = "workloads to run, default is all: ${DEFAULT-VALUE}",
+            defaultValue = "ls-lR,untar,cp,random-read,parallel-read,mixed")
+    private List<String> workloads;
+
+    @Option(names = {"--datanodes"}, description = "number of DataNodes, default is 3", defaultValue = "3")
+    private int dataNodes;
+
+    @Option(names = {"--replication"}, description = "replication factor, default is 3", defaultValue = "3")
+    private short replication;
+
+    @Option(names = {"--tree-depth"}, description = "depth of the tree listed by ls-lR, default is 5", defaultValue = "5")
+    private int treeDepth;
+
+    @Option(names = {"--tree-fanout"}, description = "sub directories per directory for ls-lR, default is 4", defaultValue = "4")
+    private int treeFanout;
+
+    @Option(names = {"--tree-files"}, description = "files per directory for ls-lR, default is 10", defaultValue = "10")
+    private int treeFiles;
+
+    @Option(names = {"--small-files"}, description = "number of files written by untar, default is 100000", defaultValue = "100000")
+    private int smallFiles;
+
+    @Option(names = {"--small-file-size"}, description = "size in bytes of the files written by untar, default is 4096", defaultValue = "4096")
+    private int smallFileSize;
+
+    @Option(names = {"--copy-size-mb"}, description = "size of the file copied by cp, default is 2048", defaultValue = "2048")
+    private long copySizeMb;
+
+    @Option(names = {"--random-reads"}, description = "number of 4 KB reads for random-read, default is 20000", defaultValue = "20000")
+    private int randomReads;
+
+    @Option(names = {"--readers"}, description = "threads for parallel-read, default is 8", defaultValue = "8")
+    private int readers;
+
+    @Option(names = {"--threads"}, split = ",", description = "concurrent callers, like FUSE loop threads, for mixed, default is ${DEFAULT-VALUE}",
+            defaultValue = "1,4,16")
+    private List<Integer> threads;
+
+    @Option(names = {"--mixed-ops"}, description = "callbacks made by mixed at each thread count, default is 20000", defaultValue = "20000")
+    private int mixedOps;
+
+    @Option(names = {"--clients"}, description = "number of HDFS clients used by HdfsFuseOperations, default is 1", defaultValue = "1")
+    private int clients;
+
+    @Option(names = {"--routing"}, description = "routing over the clients, default is LEAST_LOADED", defaultValue = "LEAST_LOADED")
+    private ShardedFileSystem.Routing routing;
+
+    @Option(names = {"--hedged-reads"}, description = "hedge slow positional reads")
+    private boolean hedgedReads;
+
+    @Option(names = {"--flush"}, description = "durability of flushes: NONE, HFLUSH or HSYNC, default is HFLUSH", defaultValue = "HFLUSH")
+    private GroupCommitFlusher.Durability flushDurability;
+
+    @Option(names = {"--group-commit-ms"}, description = "group commit window of flushes, default is 0", defaultValue = "0")
+    private long groupCommitMillis;
+
+    private DistributedFileSystem fs;
+    private int nameNodePort;
+    private HdfsFuseOperations ops;
+    private final Map<FuseOp, Latencies> latencies = new ConcurrentHashMap<>();
+
+    @Override
+    public Integer call() throws Exception {
+        var baseDir = Files.createTempDirectory("hdfs-fuse-workload");
+        Configuration conf = new HdfsConfiguration();
+        conf.set(MiniDFSCluster.HDFS_MINIDFS_BASEDIR, baseDir.toString());
+        conf.setInt(DFSConfigKeys.DFS_REPLICATION_KEY, replication);
+
+        MiniDFSCluster cluster = new MiniDFSCluster.Builder(conf).numDataNodes(dataNodes).build();
+        try (PrintStream out = output == null ? System.out
+                : new PrintStream(Files.newOutputStream(output, java.nio.file.StandardOpenOption.CREATE, java.nio.file.StandardOpenOption.APPEND));
+             var flusher = new GroupCommitFlusher(flushDurability, Duration.ofMillis(groupCommitMillis))) {
+            cluster.waitActive();
+            fs = cluster.getFileSystem();
+            nameNodePort = cluster.getNameNodePort();
+            FileSystem client = clients > 1 ? ShardedFileSystem.newInstance(fs.getConf(), clients, routing) : fs;
+            if (hedgedReads) {
+                client = new HedgedReadFileSystem(client, 95, 0.05, Duration.ofMillis(10));
+            }
+            ops = new HdfsFuseOperations(client, ConcurrencyLimiter.unlimited(), flusher);
+
+            for (var workload : workloads) {
+                switch (workload) {
+                    case "ls-lR" -> {
+                        createTree(new Path("/tree"), treeDepth);
+                        out.println(run(workload, () -> listRecursively("/tree")));
+                    }
+                    case "untar" -> out.println(run(workload, this::untar));
+                    case "cp" -> {
+                        createFile(new Path("/source.bin"), copySizeMb * 1024 * 1024);
+                        out.println(run(workload, () -> copy("/source.bin", "/copy.bin")));
+                    }
+                    case "random-read" -> {
+                        ensureFile(new Path("/copy.bin"));
+                        out.println(run(workload, () -> randomRead("/copy.bin")));
+                    }
+                    case "parallel-read" -> {
+                        ensureFile(new Path("/copy.bin"));
+                        out.println(run(workload, () -> parallelRead("/copy.bin")));
+                    }
+                    case "mixed" -> {
+                        if (!fs.exists(new Path("/tree"))) {
+                            createTree(new Path("/tree"), treeDepth);
+                        }
+                        ensureFile(new Path("/copy.bin"));
+                        List<String> files = new ArrayList<>();
+                        List<String> dirs = new ArrayList<>();
+                        for (var iterator = fs.listFiles(new Path("/tree"), true); iterator.hasNext(); ) {
+                            var file = iterator.next().getPath();
+                            files.add(file.toUri().getPath());
+                            dirs.add(file.getParent().toUri().getPath());
+                        }
+                        long length = fs.getFileStatus(new Path("/copy.bin")).getLen();
+                        for (int count : threads) {
+                            out.println(run(workload + "-" + count + "t", () -> mixed(count, files, dirs, length)));
+                        }
+                    }
+                    default -> throw new CommandLine.ParameterException(new CommandLine(this), "Unknown workload: " + workload);
+                }
+            }
+        } finally {
+            cluster.shutdown(true);
+        }
+        return 0;
+    }
+
+    private String run(String workload, Callable<?> body) throws Exception {
+        latencies.clear();
+        Map<String, Long> before = namenodeRpcs();
+        long start = System.nanoTime();
+        body.call();
+        long wallNanos = System.nanoTime() - start;
+        Map<String, Long> after = namenodeRpcs();
+
+        var json = new StringBuilder();
+        json.append("{\"label\":\"").append(label.replace("\\", "\\\\").replace("\"", "\\\"")).append('"');
+        json.append(",\"workload\":\"").append(workload).append('"');
+        json.append(",\"wallMillis\":").append(wallNanos / 1_000_000);
+        json.append(",\"namenodeRpcs\":{");
+        var separator = "";
+        for (var entry : after.entrySet()) {
+            long count = entry.getValue() - before.getOrDefault(entry.getKey(), 0L);
+            if (count > 0) {
+                json.append(separator).append('"').append(entry.getKey()).append("\":").append(count);
+                separator = ",";
+            }
+        }
+        json.append("},\"latencies\":{");
+        separator = "";
+        for (var op : FuseOp.values()) {
+            var recorded = latencies.get(op);
+            if (recorded == null) {
+                continue;
+            }
+            json.append(separator).append('"').append(op.label()).append("\":{")
+                    .append("\"count\":").append(recorded.count())
+                    .append(",\"p50Micros\":").append(recorded.percentile(50) / 1000)
+                    .append(",\"p99Micros\":").append(recorded.percentile(99) / 1000)
+                    .append('}');
+            separator = ",";
+        }
+        json.append("}}");
+        return json.toString();
+    }
+
+    /**
+     * Calls received by the NameNode, per RPC method, read from its metrics source rather than JMX
+     * where values are cached for several seconds.
+     */
+    private Map<String, Long> namenodeRpcs() {
+        var counters = new Counters();
+        DefaultMetricsSystem.instance().getSource("RpcDetailedActivityForPort" + nameNodePort).getMetrics(counters, true);
+        Map<String, Long> counts = new TreeMap<>();
+        counters.values.forEach((name, value) -> {
+            if (name.endsWith("NumOps")) {
+                String method = name.substring(0, name.length() - "NumOps".length());
+                counts.put(Character.toLowerCase(method.charAt(0)) + method.substring(1), value);
+            }
+        });
+        return counts;
+    }
+
+    /**
+     * Keeps the counters of the records of a metrics source.
+     */
+    private static final class Counters extends MetricsRecordBuilder implements MetricsCollector {
+        final Map<String, Long> values = new HashMap<>();
+
+        @Override
+        public MetricsRecordBuilder addRecord(String name) {
+            return this;
+        }
+
+        @Override
+        public MetricsRecordBuilder addRecord(MetricsInfo info) {
+            return this;
+        }
+
+        @Override
+        public MetricsRecordBuilder addCounter(MetricsInfo info, int value) {
+            values.put(info.name(), (long) value);
+            return this;
+        }
+
+        @Override
+        public MetricsRecordBuilder addCounter(MetricsInfo info, long value) {
+            values.put(info.name(), value);
+            return this;
+        }
+
+        @Override
+        public MetricsRecordBuilder tag(MetricsInfo info, String value) {
+            return this;
+        }
+
+        @Override
+        public MetricsRecordBuilder add(MetricsTag tag) {
+            return this;
+        }
+
+        @Override
+        public MetricsRecordBuilder add(AbstractMetric metric) {
+            return this;
+        }
+
+        @Override
+        public MetricsRecordBuilder setContext(String value) {
+            return this;
+        }
+
+        @Override
+        public MetricsRecordBuilder addGauge(MetricsInfo info, int value) {
+            return this;
+        }
+
+        @Override
+        public MetricsRecordBuilder addGauge(MetricsInfo info, long value) {
+            return this;
+        }
+
+        @Override
+        public MetricsRecordBuilder addGauge(MetricsInfo info, float value) {
+            return this;
+        }
+
+        @Override
+        public MetricsRecordBuilder addGauge(MetricsInfo info, double value) {
+            return this;
+        }
+
+        @Override
+        public MetricsCollector parent() {
+            return this;
+        }
+    }
+
+    private long timed(FuseOp op, FuseCall call) throws IOException {
+        long start = System.nanoTime();
+        try {
+            long result = call.call();
+            if (result < 0) {
+                throw new IOException(op.label() + " failed with errno " + -result);
+            }
+            return result;
+        } finally {
+            latencies.computeIfAbsent(op, k -> new Latencies()).record(System.nanoTime() - start);
+        }
+    }
+
+    private void createTree(Path dir, int depth) throws IOException {
+        fs.mkdirs(dir);
+        for (int i = 0; i < treeFiles; i++) {
+            fs.create(new Path(dir, "file" + i)).close();
+        }
+        if (depth > 0) {
+            for (int i = 0; i < treeFanout; i++) {
+                createTree(new Path(dir, "dir" + i), depth - 1);
+            }
+        }
+    }
+
+    private void createFile(Path file, long size) throws IOException {
+        byte[] chunk = new byte[1024 * 1024];
+        new Random(42).nextBytes(chunk);
+        try (var out = fs.create(file, true)) {
+            for (long written = 0; written < size; written += chunk.length) {
+                out.write(chunk, 0, (int) Math.min(chunk.length, size - written));
+            }
+        }
+    }
+
+    private void ensureFile(Path file) throws IOException {
+        if (!fs.exists(file)) {
+            createFile(file, copySizeMb * 1024 * 1024);
+        }
+    }
+
+    /**
+     * readdir on every directory, then getattr on every entry, like {@code ls -lR}.
+     */
+    private Void listRecursively(String dir) throws IOException {
+        FileStatus[][] entries = new FileStatus[1][];
+        timed(FuseOp.READDIR, () -> ops.readdir(dir, (directory, children) -> entries[0] = children));
+        for (var entry : entries[0]) {
+            String child = dir + "/" + entry.getPath().getName();
+            timed(FuseOp.GETATTR, () -> ops.getattr(child, status -> {}));
+        }
+        for (var entry : entries[0]) {
+            if (entry.isDirectory()) {
+                listRecursively(dir + "/" + entry.getPath().getName());
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The callbacks made while extracting an archive of small files: a failed getattr, create, write,
+     * flush, release and chmod per file, and a mkdir per directory.
+     */
+    private Void untar() throws IOException {
+        byte[] content = new byte[smallFileSize];
+        new Random(42).nextBytes(content);
+        timed(FuseOp.MKDIR, () -> ops.mkdir("/untar", 0755));
+        for (int i = 0; i < smallFiles; i++) {
+            String dir = "/untar/dir" + (i / SMALL_FILES_PER_DIR);
+            if (i % SMALL_FILES_PER_DIR == 0) {
+                timed(FuseOp.MKDIR, () -> ops.mkdir(dir, 0755));
+            }
+            String file = dir + "/file" + i;
+            timed(FuseOp.GETATTR, () -> {
+                if (ops.getattr(file, status -> {}) == 0) {
+                    throw new IOException("File already exists: " + file);
+                }
+                return 0;
+            });
+            long handle = timed(FuseOp.CREATE, () -> ops.create(file, 0644));
+            timed(FuseOp.WRITE, () -> ops.write(file, content, content.length, 0, handle));
+            timed(FuseOp.FLUSH, () -> ops.flush(file, handle));
+            timed(FuseOp.RELEASE, () -> ops.release(file, handle));
+            timed(FuseOp.CHMOD, () -> ops.chmod(file, 0644, null));
+        }
+        return null;
+    }
+
+    private Void copy(String from, String to) throws IOException {
+        byte[] buf = new byte[COPY_CHUNK];
+        long in = timed(FuseOp.OPEN, () -> ops.open(from, OpenFlags.O_RDONLY));
+        long out = timed(FuseOp.OPEN, () -> ops.open(to, OpenFlags.O_WRONLY | OpenFlags.O_CREAT));
+        long offset = 0;
+        while (true) {
+            long position = offset;
+            long read = timed(FuseOp.READ, () -> ops.read(from, buf, COPY_CHUNK, position, in));
+            if (read == 0) {
+                break;
+            }
+            timed(FuseOp.WRITE, () -> ops.write(to, buf, read, position, out));
+            offset += read;
+        }
+        timed(FuseOp.RELEASE, () -> ops.release(from, in));
+        timed(FuseOp.FLUSH, () -> ops.flush(to, out));
+        timed(FuseOp.RELEASE, () -> ops.release(to, out));
+        return null;
+    }
+
+    private Void randomRead(String path) throws IOException {
+        byte[] buf = new byte[4096];
+        long blocks = fs.getFileStatus(new Path(path)).getLen() / buf.length;
+        var random = new SplittableRandom(42);
+        long handle = timed(FuseOp.OPEN, () -> ops.open(path, OpenFlags.O_RDONLY));
+        for (int i = 0; i < randomReads; i++) {
+            long offset = random.nextLong(blocks) * buf.length;
+            timed(FuseOp.READ, () -> ops.read(path, buf, buf.length, offset, handle));
+        }
+        timed(FuseOp.RELEASE, () -> ops.release(path, handle));
+        return null;
+    }
+
+    /**
+     * Each reader opens its own handle and reads its slice of the file sequentially.
+     */
+    private Void parallelRead(String path) throws Exception {
+        long length = fs.getFileStatus(new Path(path)).getLen();
+        long slice = length / readers;
+        ExecutorService executor = Executors.newFixedThreadPool(readers);
+        try {
+            List<Future<Void>> futures = new ArrayList<>();
+            for (int i = 0; i < readers; i++) {
+                long start = i * slice;
+                futures.add(executor.submit(() -> {
+                    byte[] buf = new byte[COPY_CHUNK];
+                    long handle = timed(FuseOp.OPEN, () -> ops.open(path, OpenFlags.O_RDONLY));
+                    for (long offset = start; offset < start + slice; offset += COPY_CHUNK) {
+                        long position = offset;
+                        timed(FuseOp.READ, () -> ops.read(path, buf, COPY_CHUNK, position, handle));
+                    }
+                    timed(FuseOp.RELEASE, () -> ops.release(path, handle));
+                    return null;
+                }));
+            }
+            for (var future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        return null;
+    }
+
+    /**
+     * Callers sharing the mount, each making a mix of 60% getattr, 10% readdir and 30% 128 KB reads,
+     * the reads going sequentially through its own slice of the file with its own handle.
+     * The files and directories of the tree are listed beforehand, so the listing is not measured.
+     */
+    private Void mixed(int callers, List<String> files, List<String> dirs, long length) throws Exception {
+        long chunks = length / COPY_CHUNK / callers;
+        ExecutorService executor = Executors.newFixedThreadPool(callers);
+        try {
+            List<Future<Void>> futures = new ArrayList<>();
+            for (int i = 0; i < callers; i++) {
+                var random = new SplittableRandom(i);
+                long sliceStart = i * chunks * COPY_CHUNK;
+                futures.add(executor.submit(() -> {
+                    byte[] buf = new byte[COPY_CHUNK];
+                    long handle = timed(FuseOp.OPEN, () -> ops.open("/copy.bin", OpenFlags.O_RDONLY));
+                    long reads = 0;
+                    for (int op = 0; op < mixedOps / callers; op++) {
+                        int kind = random.nextInt(10);
+                        if (kind < 6) {
+                            String file = files.get(random.nextInt(files.size()));
+                            timed(FuseOp.GETATTR, () -> ops.getattr(file, status -> {}));
+                        } else if (kind < 7) {
+                            String dir = dirs.get(random.nextInt(dirs.size()));
+                            timed(FuseOp.READDIR, () -> ops.readdir(dir, (directory, children) -> {}));
+                        } else {
+                            long position = sliceStart + reads++ % chunks * COPY_CHUNK;
+                            timed(FuseOp.READ, () -> ops.read("/copy.bin", buf, COPY_CHUNK, position, handle));
+                        }
+                    }
+                    timed(FuseOp.RELEASE, () -> ops.release("/copy.bin", handle));
+                    return null;
+                }));
+            }
+            for (var future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        return null;
+    }
+
+    public static void main(String[] args) {
+        System.exit(new CommandLine(new WorkloadBenchmark())
+                .setCaseInsensitiveEnumValuesAllowed(true)
+                .execute(args));
+    }
+
+}
@@ -0,0 +1,79 @@
+package com.k3rnl.hdfs.fuse.benchmarks;
+
+import com.k3rnl.fuse.libc.OpenFlags;
+import com.k3rnl.hdfs.fuse.HdfsFuseOperations;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sequential {@link HdfsFuseOperations#write} calls of {@code chunkSize} bytes. The file is recreated
+ * every {@link LocalFiles#FILE_SIZE} bytes so the benchmark does not fill the disk.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class WritePathBenchmark {
+
+    @Param({"4096", "131072", "1048576"})
+    int chunkSize;
+
+    FileSystem fs;
+    Path dir;
+    String path;
+    HdfsFuseOperations ops;
+    byte[] chunk;
+
+    long handle;
+    long offset;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        fs = LocalFiles.rawLocalFileSystem();
+        dir = LocalFiles.createTempDir();
+        path = LocalFiles.fusePath(new Path(dir, "written.bin"));
+        ops = new HdfsFuseOperations(fs);
+        chunk = new byte[chunkSize];
+        new Random(42).nextBytes(chunk);
+    }
+
+    @Setup(Level.Iteration)
+    public void open() {
+        handle = ops.open(path, OpenFlags.O_WRONLY | OpenFlags.O_CREAT);
+        if (handle < 0) {
+            throw new IllegalStateException("open failed: " + handle);
+        }
+        offset = 0;
+    }
+
+    @TearDown(Level.Iteration)
+    public void release() {
+        ops.release(path, handle);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        fs.delete(dir, true);
+        fs.close();
+    }
+
+    @Benchmark
+    public int write(ByteCounters counters) {
+        if (offset + chunkSize > LocalFiles.FILE_SIZE) {
+            release();
+            open();
+        }
+        int written = ops.write(path, chunk, chunkSize, offset, handle);
+        offset += written;
+        counters.bytes += written;
+        return written;
+    }
+
+}
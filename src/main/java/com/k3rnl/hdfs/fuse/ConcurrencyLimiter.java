@@ -0,0 +1,64 @@
+package com.k3rnl.hdfs.fuse;
+
+import com.k3rnl.fuse.libc.Errno;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntSupplier;
+
+/**
+ * Bounds how many operations of each {@link OpClass} can be in flight at once.
+ * <p>
+ * Callbacks run on the FUSE loop thread that received them, concurrency comes from the number of loop threads.
+ * An operation waiting for a permit holds its loop thread, so at most {@code maxWaiting} operations wait
+ * at once and the others fail with {@code EAGAIN}.
+ */
+public class ConcurrencyLimiter {
+
+    private final Map<OpClass, Semaphore> limits = new EnumMap<>(OpClass.class);
+    private final int maxWaiting;
+    private final AtomicInteger waiting = new AtomicInteger();
+
+    public ConcurrencyLimiter(Map<OpClass, Integer> maxConcurrent, int maxWaiting) {
+        maxConcurrent.forEach((opClass, max) -> {
+            if (max < 1) {
+                throw new IllegalArgumentException("At least one " + opClass + " operation must be allowed");
+            }
+            limits.put(opClass, new Semaphore(max, true));
+        });
+        this.maxWaiting = maxWaiting;
+    }
+
+    public static ConcurrencyLimiter unlimited() {
+        return new ConcurrencyLimiter(Map.of(), 0);
+    }
+
+    public int run(OpClass opClass, IntSupplier call) {
+        Semaphore permits = limits.get(opClass);
+        if (permits == null) {
+            return call.getAsInt();
+        }
+        if (!permits.tryAcquire()) {
+            if (waiting.incrementAndGet() > maxWaiting) {
+                waiting.decrementAndGet();
+                return -Errno.EAGAIN();
+            }
+            try {
+                permits.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return -Errno.EIO();
+            } finally {
+                waiting.decrementAndGet();
+            }
+        }
+        try {
+            return call.getAsInt();
+        } finally {
+            permits.release();
+        }
+    }
+
+}
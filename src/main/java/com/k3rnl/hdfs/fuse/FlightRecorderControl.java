@@ -0,0 +1,92 @@
+package com.k3rnl.hdfs.fuse;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+
+/**
+ * Starts and stops a JFR recording of the FUSE and HDFS events on a running mount,
+ * either from the command line or when the process receives a signal.
+ */
+public class FlightRecorderControl {
+
+    private final Path destination;
+    private final Duration threshold;
+    private Recording recording;
+
+    public FlightRecorderControl(Path destination, Duration threshold) {
+        this.destination = destination;
+        this.threshold = threshold;
+    }
+
+    public synchronized void start() throws IOException, ParseException {
+        if (recording != null) {
+            return;
+        }
+        recording = new Recording(Configuration.getConfiguration("profile"));
+        recording.enable(FuseOperationEvent.class).withThreshold(threshold);
+        recording.enable(HdfsCallEvent.class).withThreshold(threshold);
+        recording.setName("hdfs-fuse");
+        recording.setToDisk(true);
+        recording.setDestination(destination);
+        recording.start();
+        System.err.println("JFR recording started, it will be written to " + destination);
+    }
+
+    public synchronized void stop() {
+        if (recording == null) {
+            return;
+        }
+        recording.stop();
+        recording.close();
+        recording = null;
+        System.err.println("JFR recording written to " + destination);
+    }
+
+    public synchronized void toggle() {
+        if (recording != null) {
+            stop();
+            return;
+        }
+        try {
+            start();
+        } catch (IOException | ParseException e) {
+            System.err.println("Error starting JFR recording to " + destination);
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Signals are only available through {@code sun.misc.Signal}, it is used through reflection
+     * so the build does not depend on an internal API.
+     */
+    public void installSignalHandler(String signal) {
+        try {
+            Class<?> signalClass = Class.forName("sun.misc.Signal");
+            Class<?> handlerClass = Class.forName("sun.misc.SignalHandler");
+            Object handler = Proxy.newProxyInstance(handlerClass.getClassLoader(), new Class<?>[]{handlerClass},
+                    (proxy, method, args) -> switch (method.getName()) {
+                        case "handle" -> {
+                            toggle();
+                            yield null;
+                        }
+                        case "hashCode" -> System.identityHashCode(proxy);
+                        case "equals" -> proxy == args[0];
+                        default -> "JFR signal handler";
+                    });
+            Object instance = signalClass.getConstructor(String.class).newInstance(signal);
+            signalClass.getMethod("handle", signalClass, handlerClass).invoke(null, instance, handler);
+        } catch (InvocationTargetException e) {
+            System.err.println("Cannot use signal " + signal + " to control JFR recordings: " + e.getCause().getMessage());
+        } catch (ReflectiveOperationException e) {
+            System.err.println("Signals are not supported, JFR recordings can only be started with --jfr");
+        }
+    }
+
+}
@@ -0,0 +1,41 @@
+package com.k3rnl.hdfs.fuse;
+
+public enum FuseOp {
+    GETATTR(OpClass.LOOKUP),
+    READDIR(OpClass.LISTING),
+    CREATE(OpClass.MUTATION),
+    OPEN(OpClass.LOOKUP),
+    RELEASE(OpClass.WRITE),
+    RMDIR(OpClass.MUTATION),
+    UNLINK(OpClass.MUTATION),
+    READ(OpClass.READ),
+    WRITE(OpClass.WRITE),
+    UTIMENS(OpClass.MUTATION),
+    STATFS(OpClass.LOOKUP),
+    MKDIR(OpClass.MUTATION),
+    MKNOD(OpClass.MUTATION),
+    RENAME(OpClass.MUTATION),
+    CHOWN(OpClass.MUTATION),
+    CHMOD(OpClass.MUTATION),
+    TRUNCATE(OpClass.MUTATION),
+    GETXATTR(OpClass.LOOKUP),
+    SETXATTR(OpClass.MUTATION),
+    REMOVEXATTR(OpClass.MUTATION),
+    FLUSH(OpClass.WRITE),
+    FSYNC(OpClass.WRITE);
+
+    private final OpClass opClass;
+
+    FuseOp(OpClass opClass) {
+        this.opClass = opClass;
+    }
+
+    public OpClass opClass() {
+        return opClass;
+    }
+
+    public String label() {
+        return name().toLowerCase();
+    }
+
+}
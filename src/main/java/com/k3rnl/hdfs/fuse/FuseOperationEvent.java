@@ -0,0 +1,33 @@
+package com.k3rnl.hdfs.fuse;
+
+import jdk.jfr.*;
+
+@Name("com.k3rnl.hdfs.fuse.FuseOperation")
+@Label("FUSE Operation")
+@Category({"HDFS FUSE"})
+@Description("A FUSE callback served by HdfsFuseOperations")
+@StackTrace(false)
+public class FuseOperationEvent extends Event {
+
+    @Label("Operation")
+    String op;
+
+    @Label("Path")
+    String path;
+
+    @Label("Size")
+    @DataAmount
+    long size;
+
+    @Label("Offset")
+    long offset;
+
+    @Label("Errno")
+    @Description("Error number returned to the kernel, 0 on success")
+    int errno;
+
+    @Label("Cache Hit")
+    @Description("The read was served from the buffered stream without fetching from HDFS")
+    boolean cacheHit;
+
+}
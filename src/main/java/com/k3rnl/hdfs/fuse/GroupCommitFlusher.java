@@ -0,0 +1,179 @@
+package com.k3rnl.hdfs.fuse;
+
+import org.apache.hadoop.fs.FSDataOutputStream;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+
+/**
+ * Applies the durability policy of FUSE flushes on write handles, and hsyncs them on fsync.
+ * <p>
+ * With a group commit window, flush and fsync requests are queued and a flusher thread completes every request
+ * received during the window together: each stream is synced once however many requests it got,
+ * and the different streams are synced in parallel.
+ */
+public class GroupCommitFlusher implements AutoCloseable {
+
+    public enum Durability {
+        /** Flush does nothing, data reaches HDFS when the client buffers are full or the file is closed. */
+        NONE,
+        /** Data is visible to new readers, it is in the memory of all the DataNodes of the pipeline. */
+        HFLUSH,
+        /** Data is on the disks of all the DataNodes of the pipeline. */
+        HSYNC
+    }
+
+    private record Request(FSDataOutputStream out, boolean hsync, CompletableFuture<Void> done) {}
+
+    private final Durability durability;
+    private final long windowNanos;
+    private final BlockingQueue<Request> queue = new LinkedBlockingQueue<>();
+    private final ExecutorService syncs;
+    private final Thread flusher;
+    private volatile boolean closed;
+
+    public GroupCommitFlusher(Durability durability, Duration window) {
+        this.durability = durability;
+        this.windowNanos = window.toNanos();
+        if (windowNanos > 0) {
+            syncs = Executors.newCachedThreadPool(Thread.ofPlatform().name("hdfs-sync-", 0).daemon().factory());
+            flusher = Thread.ofPlatform().name("hdfs-group-commit").daemon().start(this::run);
+        } else {
+            syncs = null;
+            flusher = null;
+        }
+    }
+
+    public static GroupCommitFlusher perCall(Durability durability) {
+        return new GroupCommitFlusher(durability, Duration.ZERO);
+    }
+
+    public void flush(FSDataOutputStream out) throws IOException {
+        if (durability != Durability.NONE) {
+            sync(out, durability == Durability.HSYNC);
+        }
+    }
+
+    /**
+     * Hsyncs the stream whatever the durability policy.
+     */
+    public void fsync(FSDataOutputStream out) throws IOException {
+        sync(out, true);
+    }
+
+    private void sync(FSDataOutputStream out, boolean hsync) throws IOException {
+        if (flusher == null) {
+            syncNow(out, hsync);
+            return;
+        }
+        var request = new Request(out, hsync, new CompletableFuture<>());
+        queue.add(request);
+        if (closed && queue.remove(request)) {
+            throw new IOException("Flusher closed");
+        }
+        try {
+            request.done.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while flushing");
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException io ? io : new IOException(e.getCause());
+        }
+    }
+
+    private static void syncNow(FSDataOutputStream out, boolean hsync) throws IOException {
+        if (hsync) {
+            out.hsync();
+        } else {
+            out.hflush();
+        }
+    }
+
+    private void run() {
+        boolean running = true;
+        while (running) {
+            List<Request> batch = new ArrayList<>();
+            try {
+                batch.add(queue.take());
+                long deadline = System.nanoTime() + windowNanos;
+                long remaining;
+                while ((remaining = deadline - System.nanoTime()) > 0) {
+                    Request request = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (request == null) {
+                        break;
+                    }
+                    batch.add(request);
+                }
+            } catch (InterruptedException e) {
+                running = false; // closed, the requests already taken are still committed
+            }
+            commit(batch);
+            running &= !Thread.currentThread().isInterrupted();
+        }
+    }
+
+    private void commit(List<Request> batch) {
+        Map<FSDataOutputStream, List<Request>> byStream = new IdentityHashMap<>();
+        for (var request : batch) {
+            byStream.computeIfAbsent(request.out, k -> new ArrayList<>()).add(request);
+        }
+        List<Future<?>> pending = new ArrayList<>();
+        byStream.forEach((out, requests) -> {
+            boolean hsync = requests.stream().anyMatch(Request::hsync);
+            try {
+                pending.add(syncs.submit(() -> {
+                    try {
+                        syncNow(out, hsync);
+                        requests.forEach(request -> request.done.complete(null));
+                    } catch (IOException | RuntimeException e) {
+                        requests.forEach(request -> request.done.completeExceptionally(e));
+                    }
+                }));
+            } catch (RejectedExecutionException e) {
+                requests.forEach(request -> request.done.completeExceptionally(new IOException("Flusher closed", e)));
+            }
+        });
+        // the requests get the result of their sync even if the flusher is closed meanwhile
+        boolean interrupted = false;
+        for (var future : pending) {
+            while (true) {
+                try {
+                    future.get();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    break; // already reported to the requests
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void close() {
+        if (flusher != null) {
+            closed = true;
+            flusher.interrupt();
+            try {
+                flusher.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            syncs.shutdown();
+            Request request;
+            while ((request = queue.poll()) != null) {
+                request.done.completeExceptionally(new IOException("Flusher closed"));
+            }
+        }
+    }
+
+}
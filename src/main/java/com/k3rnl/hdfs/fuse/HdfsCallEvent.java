@@ -0,0 +1,29 @@
+package com.k3rnl.hdfs.fuse;
+
+import jdk.jfr.*;
+
+@Name("com.k3rnl.hdfs.fuse.HdfsCall")
+@Label("HDFS Call")
+@Category({"HDFS FUSE"})
+@Description("A call made to the NameNode or a DataNode through the Hadoop client")
+@StackTrace(false)
+public class HdfsCallEvent extends Event {
+
+    @Label("Operation")
+    String op;
+
+    @Label("Path")
+    String path;
+
+    @Label("Size")
+    @DataAmount
+    long size;
+
+    @Label("Offset")
+    long offset;
+
+    @Label("Error")
+    @Description("Exception thrown by the call, empty on success")
+    String error;
+
+}
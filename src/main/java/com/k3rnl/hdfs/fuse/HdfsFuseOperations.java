@@ -14,10 +14,17 @@ import org.graalvm.word.WordFactory;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.time.Duration;
 import java.util.EnumSet;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.IntSupplier;
+import java.util.function.LongSupplier;
+import java.util.function.ToIntFunction;
 
 public class HdfsFuseOperations extends JavaFuseOperations {
 
@@ -25,10 +32,76 @@ public class HdfsFuseOperations extends JavaFuseOperations {
     private final Map<Long, FileWriteInfo> openWriteFiles = new ConcurrentHashMap<>();
     private final AtomicLong handleCounter = new AtomicLong();
 
-    protected FileSystem fs;
+    protected volatile FileSystem fs;
+    private final CompletableFuture<FileSystem> connection;
+    private final Duration connectTimeout;
+    private final long connectDeadline;
+    private final AtomicBoolean connectTimeoutReported = new AtomicBoolean();
+    private final ConcurrencyLimiter limiter;
+    private final MetadataScheduler scheduler;
+    private final GroupCommitFlusher flusher;
 
     public HdfsFuseOperations(FileSystem fs) {
-        this.fs = fs;
+        this(fs, ConcurrencyLimiter.unlimited());
+    }
+
+    public HdfsFuseOperations(FileSystem fs, ConcurrencyLimiter limiter) {
+        this(fs, limiter, GroupCommitFlusher.perCall(GroupCommitFlusher.Durability.HFLUSH));
+    }
+
+    public HdfsFuseOperations(FileSystem fs, ConcurrencyLimiter limiter, GroupCommitFlusher flusher) {
+        this(CompletableFuture.completedFuture(fs), Duration.ZERO, limiter, flusher);
+    }
+
+    /**
+     * Operations received before {@code connection} completes wait for it, until {@code connectTimeout}
+     * after this call, then fail at once.
+     */
+    public HdfsFuseOperations(CompletableFuture<FileSystem> connection, Duration connectTimeout,
+                              ConcurrencyLimiter limiter, GroupCommitFlusher flusher) {
+        this(connection, connectTimeout, limiter, MetadataScheduler.unlimited(), flusher);
+    }
+
+    /**
+     * Operations are admitted by {@code scheduler} before taking their {@code limiter} permit, it must be
+     * the scheduler of the {@link RateLimitedFileSystem} under {@code connection} if any.
+     */
+    public HdfsFuseOperations(CompletableFuture<FileSystem> connection, Duration connectTimeout,
+                              ConcurrencyLimiter limiter, MetadataScheduler scheduler, GroupCommitFlusher flusher) {
+        this.connection = connection;
+        this.connectTimeout = connectTimeout;
+        this.connectDeadline = System.nanoTime() + connectTimeout.toNanos();
+        this.limiter = limiter;
+        this.scheduler = scheduler;
+        this.flusher = flusher;
+        this.fs = connection.getNow(null);
+    }
+
+    private boolean awaitConnection() {
+        if (fs != null) {
+            return true;
+        }
+        if (connection.isCompletedExceptionally()) {
+            return false;
+        }
+        try {
+            long remaining = connectDeadline - System.nanoTime();
+            fs = remaining > 0 ? connection.get(remaining, TimeUnit.NANOSECONDS) : connection.getNow(null);
+            if (fs == null) {
+                throw new TimeoutException();
+            }
+            return true;
+        } catch (TimeoutException e) {
+            if (!connectTimeoutReported.getAndSet(true)) {
+                System.err.println("HDFS is still not reachable after " + connectTimeout.toSeconds() + "s, failing operations until it is");
+            }
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException | CompletionException e) {
+            return false; // reported by the connection
+        }
     }
 
     public record FileReadInfo(SeekableBufferedInputStream in, Path path) {}
@@ -59,32 +132,86 @@ public class HdfsFuseOperations extends JavaFuseOperations {
         stat.st_ctime().tv_sec(status.getModificationTime() / 1000);
     }
 
-    @Override
-    public int getattr(String path, FileStat stat, FuseFileInfo fi) {
+    private int trace(FuseOp op, OpClass opClass, String path, long size, long offset, ToIntFunction<FuseOperationEvent> call) {
+        FuseOperationEvent event = new FuseOperationEvent();
+        event.begin();
+        int result;
         try {
-            var status = fs.getFileStatus(new Path(path));
-            fileStat(status, stat);
-            return 0;
-        } catch (FileNotFoundException e) {
-            return -Errno.ENOENT();
-        } catch (AccessControlException e) {
-            return -Errno.EACCES();
-        } catch (IOException e) {
-            System.err.println("Error getting file status for path: " + path);
-            e.printStackTrace();
-            return -Errno.EIO();
+            // a rate limited operation waits without holding a permit
+            result = awaitConnection()
+                    ? scheduler.admit(opClass, () -> limiter.run(opClass, () -> call.applyAsInt(event)))
+                    : -Errno.EIO();
+        } catch (MetadataScheduler.ThrottledException e) {
+            result = -Errno.EAGAIN();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            result = -Errno.EIO();
         }
+        event.end();
+        if (event.shouldCommit()) {
+            event.op = op.label();
+            event.path = path;
+            event.size = size;
+            event.offset = offset;
+            event.errno = result < 0 ? -result : 0;
+            event.commit();
+        }
+        return result;
+    }
+
+    /**
+     * Traces a call returning a file handle, or a negative errno.
+     */
+    private long traceHandle(FuseOp op, OpClass opClass, String path, LongSupplier call) {
+        long[] handle = new long[1];
+        int result = trace(op, opClass, path, 0, 0, event -> {
+            handle[0] = call.getAsLong();
+            return handle[0] < 0 ? (int) handle[0] : 0;
+        });
+        return result < 0 ? result : handle[0];
+    }
+
+    private int trace(FuseOp op, String path, long size, long offset, ToIntFunction<FuseOperationEvent> call) {
+        return trace(op, op.opClass(), path, size, offset, call);
+    }
+
+    private int trace(FuseOp op, String path, long size, long offset, IntSupplier call) {
+        return trace(op, path, size, offset, event -> call.getAsInt());
+    }
+
+    private int trace(FuseOp op, String path, IntSupplier call) {
+        return trace(op, path, 0, 0, call);
     }
 
     @Override
-    public int readdir(String path, VoidPointer buf, FillDir filter, long offset, FuseFileInfo fi, FuseReaddirFlags flags) {
-        try {
-            var folderStatus = fs.getFileStatus(new Path(path));
-            if (!folderStatus.isDirectory()) {
-                return -Errno.ENOTDIR();
+    public int getattr(String path, FileStat stat, FuseFileInfo fi) {
+        return getattr(path, status -> fileStat(status, stat));
+    }
+
+    /**
+     * getattr without a native stat buffer, {@code result} receives the status of the path.
+     */
+    public int getattr(String path, Consumer<FileStatus> result) {
+        return trace(FuseOp.GETATTR, path, () -> {
+            try {
+                result.accept(fs.getFileStatus(new Path(path)));
+                return 0;
+            } catch (FileNotFoundException e) {
+                return -Errno.ENOENT();
+            } catch (AccessControlException e) {
+                return -Errno.EACCES();
+            } catch (IOException e) {
+                System.err.println("Error getting file status for path: " + path);
+                e.printStackTrace();
+                return -Errno.EIO();
             }
+        });
+    }
+
+    @Override
+    public int readdir(String path, VoidPointer buf, FillDir filter, long offset, FuseFileInfo fi, FuseReaddirFlags flags) {
+        return readdir(path, (folderStatus, status) -> {
             FileStat stat = StackValue.get(FileStat.class);
-            var status = fs.listStatus(new Path(path));
             fileStat(folderStatus, stat);
             filter.apply(buf, ".", stat, 0, FuseFillDirFlags.FUSE_FILL_DIR_PLUS);
             filter.apply(buf, "..", WordFactory.nullPointer(), 0, FuseFillDirFlags.FUSE_FILL_DIR_PLUS);
@@ -92,42 +219,97 @@ public class HdfsFuseOperations extends JavaFuseOperations {
                 fileStat(fileStatus, stat);
                 filter.apply(buf, fileStatus.getPath().getName(), stat, 0, FuseFillDirFlags.FUSE_FILL_DIR_PLUS);
             }
-            return 0;
-        } catch (FileNotFoundException e) {
-            return -Errno.ENOENT();
-        } catch (IOException e) {
-            System.err.println("Error listing directory: " + path);
-            return -Errno.EIO();
-        }
+        });
+    }
+
+    /**
+     * readdir without a native fill function, {@code fill} receives the status of the directory and of its entries.
+     */
+    public int readdir(String path, BiConsumer<FileStatus, FileStatus[]> fill) {
+        return trace(FuseOp.READDIR, path, () -> {
+            try {
+                var folderStatus = fs.getFileStatus(new Path(path));
+                if (!folderStatus.isDirectory()) {
+                    return -Errno.ENOTDIR();
+                }
+                fill.accept(folderStatus, fs.listStatus(new Path(path)));
+                return 0;
+            } catch (FileNotFoundException e) {
+                return -Errno.ENOENT();
+            } catch (IOException e) {
+                System.err.println("Error listing directory: " + path);
+                return -Errno.EIO();
+            }
+        });
     }
 
     @Override
     public int create(String path, long mode, FuseFileInfo fi) {
-        Path filePath = new Path(path);
-        try {
-            FsPermission permission = new FsPermission((short) (mode & 0777));
-            // Create and open the file for writing
-            fs.create(filePath, permission, true, 4096, fs.getDefaultReplication(filePath), fs.getDefaultBlockSize(filePath), null)
-                    .close(); // force the file to exists
-            FSDataOutputStream out = fs.append(filePath);
-            long handle = handleCounter.incrementAndGet();
-            FileWriteInfo writeInfo = new FileWriteInfo(out, filePath);
-            writeInfo.lastOffset = 0;
-            openWriteFiles.put(handle, writeInfo);
-            fi.fh(handle); // Set the file handle
-            return 0;
-        } catch (IOException e) {
-            System.err.println("Error creating file: " + path);
-            e.printStackTrace();
-            return -Errno.EIO();
+        long handle = create(path, mode);
+        if (handle < 0) {
+            return (int) handle;
         }
+        fi.fh(handle);
+        return 0;
+    }
+
+    /**
+     * Creates a file and opens it for writing.
+     *
+     * @return the new file handle, or a negative errno
+     */
+    public long create(String path, long mode) {
+        return traceHandle(FuseOp.CREATE, FuseOp.CREATE.opClass(), path, () -> {
+            Path filePath = new Path(path);
+            try {
+                FsPermission permission = new FsPermission((short) (mode & 0777));
+                // Create and open the file for writing
+                fs.create(filePath, permission, true, 4096, fs.getDefaultReplication(filePath), fs.getDefaultBlockSize(filePath), null)
+                        .close(); // force the file to exists
+                FSDataOutputStream out = fs.append(filePath);
+                long handle = handleCounter.incrementAndGet();
+                FileWriteInfo writeInfo = new FileWriteInfo(out, filePath);
+                writeInfo.lastOffset = 0;
+                openWriteFiles.put(handle, writeInfo);
+                return handle;
+            } catch (IOException e) {
+                System.err.println("Error creating file: " + path);
+                e.printStackTrace();
+                return -Errno.EIO();
+            }
+        });
     }
 
 
     @Override
     public int open(String path, FuseFileInfo fi) {
+        long handle = open(path, fi.flags());
+        if (handle < 0) {
+            return (int) handle;
+        }
+        fi.fh(handle);
+        return 0;
+    }
+
+    /**
+     * Opens a file with the given open(2) flags.
+     *
+     * @return the new file handle, or a negative errno
+     */
+    public long open(String path, int flags) {
+        return traceHandle(FuseOp.OPEN, openClass(flags), path, () -> openFile(path, flags));
+    }
+
+    /**
+     * Opens for writing create or append to the file, they are mutations.
+     */
+    private static OpClass openClass(int flags) {
+        boolean mutates = (flags & OpenFlags.O_ACCMODE) != OpenFlags.O_RDONLY || (flags & OpenFlags.O_CREAT) != 0;
+        return mutates ? OpClass.MUTATION : OpClass.LOOKUP;
+    }
+
+    private long openFile(String path, int flags) {
         Path filePath = new Path(path);
-        int flags = fi.flags();
         int accessMode = flags & OpenFlags.O_ACCMODE;
 
         try {
@@ -164,7 +346,6 @@ public class HdfsFuseOperations extends JavaFuseOperations {
                 // Open for reading
                 SeekableBufferedInputStream in = new SeekableBufferedInputStream(fs.open(filePath), 2048 * 1024, 20);
                 openFiles.put(handle, new FileReadInfo(in, filePath));
-                fi.fh(handle);
             } else if (accessMode == OpenFlags.O_WRONLY || accessMode == OpenFlags.O_RDWR) {
                 // Open for writing or reading and writing
                 FileWriteInfo writeInfo;
@@ -184,18 +365,24 @@ public class HdfsFuseOperations extends JavaFuseOperations {
 
                 // If access mode is O_RDWR, also handle reading
                 if (accessMode == OpenFlags.O_RDWR) {
-                    SeekableBufferedInputStream in = new SeekableBufferedInputStream(fs.open(filePath), 2048 * 1024, 20);
+                    FSDataInputStream opened;
+                    try {
+                        opened = fs.open(filePath);
+                    } catch (IOException | RuntimeException e) {
+                        out.close(); // the file would stay open for writing
+                        throw e;
+                    }
+                    SeekableBufferedInputStream in = new SeekableBufferedInputStream(opened, 2048 * 1024, 20);
                     openFiles.put(handle, new FileReadInfo(in, filePath));
                 }
 
                 openWriteFiles.put(handle, writeInfo);
-                fi.fh(handle);
             } else {
                 // Unsupported access mode
                 return -Errno.EACCES();
             }
 
-            return 0;
+            return handle;
         } catch (AccessControlException e) {
             return -Errno.EACCES();
         } catch (IOException e) {
@@ -207,330 +394,397 @@ public class HdfsFuseOperations extends JavaFuseOperations {
 
     @Override
     public int release(String path, FuseFileInfo fi) {
-        long handle = fi.fh();
+        return release(path, fi.fh());
+    }
 
-        // Close input stream if it's open
-        FileReadInfo in = openFiles.remove(handle);
-        if (in != null) {
-            try {
-                in.in.close();
-            } catch (IOException e) {
-                System.err.println("Error closing input stream for file: " + path);
-                e.printStackTrace();
-                return -Errno.EIO();
+    public int release(String path, long handle) {
+        return trace(FuseOp.RELEASE, path, () -> {
+            // Close input stream if it's open
+            FileReadInfo in = openFiles.remove(handle);
+            if (in != null) {
+                try {
+                    in.in.close();
+                } catch (IOException e) {
+                    System.err.println("Error closing input stream for file: " + path);
+                    e.printStackTrace();
+                    return -Errno.EIO();
+                }
             }
-        }
 
-        // Close output stream if it's open
-        FileWriteInfo writeInfo = openWriteFiles.remove(handle);
-        if (writeInfo != null) {
-            try {
-                writeInfo.out.close();
-            } catch (IOException e) {
-                System.err.println("Error closing output stream for file: " + path);
-                e.printStackTrace();
-                return -Errno.EIO();
+            // Close output stream if it's open
+            FileWriteInfo writeInfo = openWriteFiles.remove(handle);
+            if (writeInfo != null) {
+                try {
+                    writeInfo.out.close();
+                } catch (IOException e) {
+                    System.err.println("Error closing output stream for file: " + path);
+                    e.printStackTrace();
+                    return -Errno.EIO();
+                }
             }
-        }
 
-        return 0;
+            return 0;
+        });
     }
 
     @Override
     public int rmdir(String path) {
-        try {
-            var status = fs.getFileStatus(new Path(path));
-            if (!status.isDirectory()) {
-                return -Errno.ENOTDIR();
+        return trace(FuseOp.RMDIR, path, () -> {
+            try {
+                var status = fs.getFileStatus(new Path(path));
+                if (!status.isDirectory()) {
+                    return -Errno.ENOTDIR();
+                }
+                fs.delete(new Path(path), true);
+                return 0;
+            } catch (FileNotFoundException e) {
+                return -Errno.ENOENT();
+            } catch (IOException e) {
+                System.err.println("Error deleting directory: " + path);
+                return -Errno.EIO();
             }
-            fs.delete(new Path(path), true);
-            return 0;
-        } catch (FileNotFoundException e) {
-            return -Errno.ENOENT();
-        } catch (IOException e) {
-            System.err.println("Error deleting directory: " + path);
-            return -Errno.EIO();
-        }
+        });
     }
 
     @Override
     public int unlink(String path) {
-        try {
-            var status = fs.getFileStatus(new Path(path));
-            if (status.isDirectory()) {
-                return -Errno.EISDIR();
+        return trace(FuseOp.UNLINK, path, () -> {
+            try {
+                var status = fs.getFileStatus(new Path(path));
+                if (status.isDirectory()) {
+                    return -Errno.EISDIR();
+                }
+                fs.delete(new Path(path), false);
+                return 0;
+            } catch (FileNotFoundException e) {
+                return -Errno.ENOENT();
+            } catch (IOException e) {
+                System.err.println("Error deleting file: " + path);
+                return -Errno.EIO();
             }
-            fs.delete(new Path(path), false);
-            return 0;
-        } catch (FileNotFoundException e) {
-            return -Errno.ENOENT();
-        } catch (IOException e) {
-            System.err.println("Error deleting file: " + path);
-            return -Errno.EIO();
-        }
+        });
     }
 
     @Override
     public int read(String path, byte[] buf, long size, long offset, FuseFileInfo fi) {
-        long handle = fi.fh();
-        FileReadInfo info = openFiles.get(handle);
-        SeekableBufferedInputStream in = info.in;
-
-        if (in == null) {
-            return -Errno.EBADF(); // Invalid file handle
-        }
+        return read(path, buf, size, offset, fi.fh());
+    }
 
-        try {
-            synchronized (in) {
-                in.seek(offset);
-                byte[] data = new byte[(int) size];
-                int bytesRead = 0;
-                int totalBytesRead = 0;
-                int bytesToRead = (int) size;
+    public int read(String path, byte[] buf, long size, long offset, long handle) {
+        return trace(FuseOp.READ, path, size, offset, event -> {
+            FileReadInfo info = openFiles.get(handle);
+            SeekableBufferedInputStream in = info.in;
 
-                totalBytesRead = in.readNBytes(data, totalBytesRead, bytesToRead);
+            if (in == null) {
+                return -Errno.EBADF(); // Invalid file handle
+            }
 
-                if (totalBytesRead > 0) {
-                    System.arraycopy(data, 0, buf, 0, totalBytesRead);
-                    return totalBytesRead;
-                } else {
-                    return 0; // EOF
+            try {
+                synchronized (in) {
+                    long partLoads = in.partLoads();
+                    in.seek(offset);
+                    byte[] data = new byte[(int) size];
+                    int bytesRead = 0;
+                    int totalBytesRead = 0;
+                    int bytesToRead = (int) size;
+
+                    totalBytesRead = in.readNBytes(data, totalBytesRead, bytesToRead);
+                    event.cacheHit = in.partLoads() == partLoads;
+
+                    if (totalBytesRead > 0) {
+                        System.arraycopy(data, 0, buf, 0, totalBytesRead);
+                        return totalBytesRead;
+                    } else {
+                        return 0; // EOF
+                    }
                 }
+            } catch (IOException e) {
+                System.err.println("Error reading from file: " + path);
+                e.printStackTrace();
+                return -Errno.EIO();
+            } catch (Exception e) {
+                e.printStackTrace();
+                return -Errno.EIO();
             }
-        } catch (IOException e) {
-            System.err.println("Error reading from file: " + path);
-            e.printStackTrace();
-            return -Errno.EIO();
-        } catch (Exception e) {
-            e.printStackTrace();
-            return -Errno.EIO();
-        }
+        });
     }
 
     @Override
     public int write(String path, byte[] buf, long size, long offset, FuseFileInfo fi) {
-        long handle = fi.fh();
-        FileWriteInfo writeInfo = openWriteFiles.get(handle);
+        return write(path, buf, size, offset, fi.fh());
+    }
 
-        if (writeInfo == null) {
-            return -Errno.EBADF(); // Invalid file handle
-        }
+    public int write(String path, byte[] buf, long size, long offset, long handle) {
+        return trace(FuseOp.WRITE, path, size, offset, () -> {
+            FileWriteInfo writeInfo = openWriteFiles.get(handle);
 
-        try {
-            if (offset < writeInfo.lastOffset) {
-                // Writing before the last written offset is not supported
-                return -Errno.EINVAL();
+            if (writeInfo == null) {
+                return -Errno.EBADF(); // Invalid file handle
             }
 
-            if (offset > writeInfo.lastOffset) {
-                // Need to fill the gap between lastOffset and offset with zeros
-                long gapSize = offset - writeInfo.lastOffset;
-                byte[] zeros = new byte[(int) gapSize];
-                writeInfo.out.write(zeros);
-                writeInfo.lastOffset += gapSize;
-            }
+            try {
+                if (offset < writeInfo.lastOffset) {
+                    // Writing before the last written offset is not supported
+                    return -Errno.EINVAL();
+                }
 
-            byte[] data = new byte[(int) size];
-            for (long i = 0; i < size; i++) {
-                data[(int) i] = buf[(int) i];
-            }
-            writeInfo.out.write(data);
-            writeInfo.lastOffset += size;
+                if (offset > writeInfo.lastOffset) {
+                    // Need to fill the gap between lastOffset and offset with zeros
+                    long gapSize = offset - writeInfo.lastOffset;
+                    byte[] zeros = new byte[(int) gapSize];
+                    writeInfo.out.write(zeros);
+                    writeInfo.lastOffset += gapSize;
+                }
 
-            return (int) size;
-        } catch (IOException e) {
-            System.err.println("Error writing to file: " + path);
-            e.printStackTrace();
-            return -Errno.EIO();
-        }
+                byte[] data = new byte[(int) size];
+                for (long i = 0; i < size; i++) {
+                    data[(int) i] = buf[(int) i];
+                }
+                writeInfo.out.write(data);
+                writeInfo.lastOffset += size;
+
+                return (int) size;
+            } catch (IOException e) {
+                System.err.println("Error writing to file: " + path);
+                e.printStackTrace();
+                return -Errno.EIO();
+            }
+        });
     }
 
     @Override
     public int utimens(String path, TimeSpec[] timespec, FuseFileInfo fi) {
-        try {
-            var status = fs.getFileStatus(new Path(path));
-            fs.setTimes(new Path(path), timespec[0].tv_sec(), timespec[1].tv_sec());
-            return 0;
-        } catch (FileNotFoundException e) {
-            return -Errno.ENOENT();
-        } catch (IOException e) {
-            System.err.println("Error setting file times: " + path);
-            e.printStackTrace();
-            return -Errno.EIO();
-        }
+        return trace(FuseOp.UTIMENS, path, () -> {
+            try {
+                var status = fs.getFileStatus(new Path(path));
+                fs.setTimes(new Path(path), timespec[0].tv_sec(), timespec[1].tv_sec());
+                return 0;
+            } catch (FileNotFoundException e) {
+                return -Errno.ENOENT();
+            } catch (IOException e) {
+                System.err.println("Error setting file times: " + path);
+                e.printStackTrace();
+                return -Errno.EIO();
+            }
+        });
     }
     @Override
     public int statfs(String path, StatVFS stat) {
-        try {
-            final var blockSize = fs.getDefaultBlockSize(new Path("/"));
-            var status = fs.getStatus();
-            stat.f_blocks(status.getCapacity() / blockSize);
-            stat.f_bfree(status.getRemaining() / blockSize);
-            stat.f_bavail(status.getRemaining() / blockSize);
-            stat.f_bsize(blockSize);
-            stat.f_frsize(blockSize);
-            return 0;
-        } catch (FileNotFoundException e) {
-            return -Errno.ENOENT();
-        } catch (IOException e) {
-            System.err.println("Error getting file status for path: " + path);
-            return -Errno.EIO();
-        }
+        return trace(FuseOp.STATFS, path, () -> {
+            try {
+                final var blockSize = fs.getDefaultBlockSize(new Path("/"));
+                var status = fs.getStatus();
+                stat.f_blocks(status.getCapacity() / blockSize);
+                stat.f_bfree(status.getRemaining() / blockSize);
+                stat.f_bavail(status.getRemaining() / blockSize);
+                stat.f_bsize(blockSize);
+                stat.f_frsize(blockSize);
+                return 0;
+            } catch (FileNotFoundException e) {
+                return -Errno.ENOENT();
+            } catch (IOException e) {
+                System.err.println("Error getting file status for path: " + path);
+                return -Errno.EIO();
+            }
+        });
     }
 
     @Override
     public int mkdir(String path, int mode) {
-        try {
-            FsPermission permission = new FsPermission((short) (mode & 0777));
-            fs.mkdirs(new Path(path), permission);
-            return 0;
-        } catch (IOException e) {
-            System.err.println("Error creating directory: " + path);
-            return -Errno.EIO();
-        }
+        return trace(FuseOp.MKDIR, path, () -> {
+            try {
+                FsPermission permission = new FsPermission((short) (mode & 0777));
+                fs.mkdirs(new Path(path), permission);
+                return 0;
+            } catch (IOException e) {
+                System.err.println("Error creating directory: " + path);
+                return -Errno.EIO();
+            }
+        });
     }
 
     @Override
     public int mknod(String path, int mode, int rdev) {
-        try {
-            FsPermission permission = new FsPermission((short) (mode & 0777));
-            fs.create(new Path(path), permission, true, 4096, fs.getDefaultReplication(new Path(path)), fs.getDefaultBlockSize(new Path(path)), null)
-                    .close(); // force the file to exists
-            return 0;
-        } catch (IOException e) {
-            System.err.println("Error creating file: " + path);
-            return -Errno.EIO();
-        }
+        return trace(FuseOp.MKNOD, path, () -> {
+            try {
+                FsPermission permission = new FsPermission((short) (mode & 0777));
+                fs.create(new Path(path), permission, true, 4096, fs.getDefaultReplication(new Path(path)), fs.getDefaultBlockSize(new Path(path)), null)
+                        .close(); // force the file to exists
+                return 0;
+            } catch (IOException e) {
+                System.err.println("Error creating file: " + path);
+                return -Errno.EIO();
+            }
+        });
     }
 
     @Override
     public int rename(String from, String to, int flags) {
-        try {
-            fs.rename(new Path(from), new Path(to));
-            return 0;
-        } catch (IOException e) {
-            System.err.println("Error renaming file: " + from + " to: " + to);
-            return -Errno.EIO();
-        }
+        return trace(FuseOp.RENAME, from, () -> {
+            try {
+                fs.rename(new Path(from), new Path(to));
+                return 0;
+            } catch (IOException e) {
+                System.err.println("Error renaming file: " + from + " to: " + to);
+                return -Errno.EIO();
+            }
+        });
     }
 
     @Override
     public int chown(String path, long uid, long gid, FuseFileInfo fi) {
-        return 0;
+        return trace(FuseOp.CHOWN, path, () -> 0);
     }
 
     @Override
     public int chmod(String path, long mode, FuseFileInfo fi) {
-        try {
-            FsPermission permission = new FsPermission((short) (mode & 0777));
-            fs.setPermission(new Path(path), permission);
-            return 0;
-        } catch (IOException e) {
-            System.err.println("Error setting file permissions: " + path);
-            return -Errno.EIO();
-        }
+        return trace(FuseOp.CHMOD, path, () -> {
+            try {
+                FsPermission permission = new FsPermission((short) (mode & 0777));
+                fs.setPermission(new Path(path), permission);
+                return 0;
+            } catch (IOException e) {
+                System.err.println("Error setting file permissions: " + path);
+                return -Errno.EIO();
+            }
+        });
     }
 
     @Override
     public int truncate(String path, long size, FuseFileInfo fi) {
-        try {
-            var status = fs.getFileStatus(new Path(path));
-            if (status.isDirectory()) {
-                return -Errno.EISDIR();
-            }
+        return trace(FuseOp.TRUNCATE, path, size, 0, () -> {
             try {
-                fs.truncate(new Path(path), size);
-            } catch (RemoteException e) {
-                // HDFS does not support truncating files remotely
+                var status = fs.getFileStatus(new Path(path));
+                if (status.isDirectory()) {
+                    return -Errno.EISDIR();
+                }
+                try {
+                    fs.truncate(new Path(path), size);
+                } catch (RemoteException e) {
+                    // HDFS does not support truncating files remotely
+                }
+                return 0;
+            } catch (FileNotFoundException e) {
+                return -Errno.ENOENT();
+            } catch (IOException e) {
+                System.err.println("Error truncating file: " + path);
+                e.printStackTrace();
+                return -Errno.EIO();
             }
-            return 0;
-        } catch (FileNotFoundException e) {
-            return -Errno.ENOENT();
-        } catch (IOException e) {
-            System.err.println("Error truncating file: " + path);
-            e.printStackTrace();
-            return -Errno.EIO();
-        }
+        });
     }
 
     @Override
     public int getxattr(String path, String name, byte[] value, long size) {
-        try {
-            byte[] xAttr = fs.getXAttr(new Path(path), name);
-            if (xAttr.length > size) {
-                return -Errno.ERANGE();
+        return trace(FuseOp.GETXATTR, path, () -> {
+            try {
+                byte[] xAttr = fs.getXAttr(new Path(path), name);
+                if (xAttr.length > size) {
+                    return -Errno.ERANGE();
+                }
+                System.arraycopy(xAttr, 0, value, 0, Math.min(xAttr.length, (int) size));
+                if (size > xAttr.length)
+                    value[xAttr.length] = 0;
+                return 0;
+            } catch (AccessControlException e) {
+                return -Errno.EACCES();
+            } catch (FileNotFoundException e) {
+                return -Errno.ENOENT();
+            } catch (IOException e) {
+                System.err.println("Error getting xattr: " + name + " for file: " + path);
+                e.printStackTrace();
+                return -Errno.EIO();
             }
-            System.arraycopy(xAttr, 0, value, 0, Math.min(xAttr.length, (int) size));
-            if (size > xAttr.length)
-                value[xAttr.length] = 0;
-            return 0;
-        } catch (AccessControlException e) {
-            return -Errno.EACCES();
-        } catch (FileNotFoundException e) {
-            return -Errno.ENOENT();
-        } catch (IOException e) {
-            System.err.println("Error getting xattr: " + name + " for file: " + path);
-            e.printStackTrace();
-            return -Errno.EIO();
-        }
+        });
     }
 
     @Override
     public int setxattr(String path, String name, byte[] value, long size, int flags) {
-        try {
-            XAttrSetFlag flag;
-            if ((flags & 1) == 1)
-                flag = XAttrSetFlag.CREATE;
-            else
-                flag = XAttrSetFlag.REPLACE;
-            fs.setXAttr(new Path(path), name, value, EnumSet.of(flag));
-            return 0;
-        } catch (AccessControlException e) {
-            return -Errno.EACCES();
-        } catch (FileNotFoundException e) {
-            return -Errno.ENOENT();
-        } catch (IOException e) {
-            System.err.println("Error setting xattr: " + name + " for file: " + path);
-            e.printStackTrace();
-            return -Errno.EIO();
-        }
+        return trace(FuseOp.SETXATTR, path, size, 0, () -> {
+            try {
+                XAttrSetFlag flag;
+                if ((flags & 1) == 1)
+                    flag = XAttrSetFlag.CREATE;
+                else
+                    flag = XAttrSetFlag.REPLACE;
+                fs.setXAttr(new Path(path), name, value, EnumSet.of(flag));
+                return 0;
+            } catch (AccessControlException e) {
+                return -Errno.EACCES();
+            } catch (FileNotFoundException e) {
+                return -Errno.ENOENT();
+            } catch (IOException e) {
+                System.err.println("Error setting xattr: " + name + " for file: " + path);
+                e.printStackTrace();
+                return -Errno.EIO();
+            }
+        });
     }
 
     @Override
     public int removexattr(String path, String name) {
-        try {
-            fs.removeXAttr(new Path(path), name);
-            return 0;
-        } catch (AccessControlException e) {
-            return -Errno.EACCES();
-        } catch (FileNotFoundException e) {
-            return -Errno.ENOENT();
-        } catch (IOException e) {
-            System.err.println("Error removing xattr: " + name + " for file: " + path);
-            e.printStackTrace();
-            return -Errno.EIO();
-        }
-    }
-
-    @Override
-    public int flush(String path, FuseFileInfo fi) {
-        long handle = fi.fh();
-        FileWriteInfo writeInfo = openWriteFiles.get(handle);
-
-        if (writeInfo != null) {
+        return trace(FuseOp.REMOVEXATTR, path, () -> {
             try {
-                // Use hflush to flush data to DataNodes
-                writeInfo.out.hflush();
-                // Alternatively, use hsync to sync data to disk
-                // writeInfo.out.hsync();
+                fs.removeXAttr(new Path(path), name);
                 return 0;
+            } catch (AccessControlException e) {
+                return -Errno.EACCES();
+            } catch (FileNotFoundException e) {
+                return -Errno.ENOENT();
             } catch (IOException e) {
-                System.err.println("Error flushing output stream for file: " + path);
+                System.err.println("Error removing xattr: " + name + " for file: " + path);
                 e.printStackTrace();
                 return -Errno.EIO();
             }
-        }
-        return 0;
+        });
+    }
+
+    @Override
+    public int flush(String path, FuseFileInfo fi) {
+        return flush(path, fi.fh());
+    }
+
+    public int flush(String path, long handle) {
+        return trace(FuseOp.FLUSH, path, () -> {
+            FileWriteInfo writeInfo = openWriteFiles.get(handle);
+
+            if (writeInfo != null) {
+                try {
+                    // hflush, hsync or nothing depending on the durability policy, possibly batched with other handles
+                    flusher.flush(writeInfo.out);
+                    return 0;
+                } catch (IOException e) {
+                    System.err.println("Error flushing output stream for file: " + path);
+                    e.printStackTrace();
+                    return -Errno.EIO();
+                }
+            }
+            return 0;
+        });
+    }
+
+    @Override
+    public int fsync(String path, int isdatasync, FuseFileInfo fi) {
+        return fsync(path, fi.fh());
+    }
+
+    public int fsync(String path, long handle) {
+        return trace(FuseOp.FSYNC, path, () -> {
+            FileWriteInfo writeInfo = openWriteFiles.get(handle);
+
+            if (writeInfo != null) {
+                try {
+                    // hsync whatever the durability policy, possibly batched with other handles
+                    flusher.fsync(writeInfo.out);
+                    return 0;
+                } catch (IOException e) {
+                    System.err.println("Error syncing output stream for file: " + path);
+                    e.printStackTrace();
+                    return -Errno.EIO();
+                }
+            }
+            return 0;
+        });
     }
 
 }
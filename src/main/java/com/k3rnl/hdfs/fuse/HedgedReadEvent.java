@@ -0,0 +1,30 @@
+package com.k3rnl.hdfs.fuse;
+
+import jdk.jfr.*;
+
+@Name("com.k3rnl.hdfs.fuse.HedgedRead")
+@Label("Hedged Read")
+@Category({"HDFS FUSE"})
+@Description("A positional read slower than the adaptive threshold, retried on another replica")
+@StackTrace(false)
+public class HedgedReadEvent extends Event {
+
+    @Label("Path")
+    String path;
+
+    @Label("Size")
+    @DataAmount
+    long size;
+
+    @Label("Offset")
+    long offset;
+
+    @Label("Threshold")
+    @Timespan
+    long threshold;
+
+    @Label("Hedge Won")
+    @Description("The hedged request answered before the original one")
+    boolean hedgeWon;
+
+}
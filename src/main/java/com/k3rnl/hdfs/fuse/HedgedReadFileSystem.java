@@ -0,0 +1,300 @@
+package com.k3rnl.hdfs.fuse;
+
+import org.apache.hadoop.fs.*;
+import org.apache.hadoop.hdfs.DFSInputStream;
+import org.apache.hadoop.hdfs.DFSReplicas;
+import org.apache.hadoop.hdfs.protocol.DatanodeInfo;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.*;
+
+/**
+ * Opens streams whose positional reads are hedged: when a read takes longer than what is usual for its size,
+ * the same read is sent through a second stream and the first answer wins. On HDFS the second stream
+ * skips the DataNode the first one reads from, so the hedge goes to another replica.
+ * <p>
+ * The threshold is a percentile of the recent latencies of reads of the same size, and hedges are limited
+ * to a fraction of all reads so a slow cluster is not flooded with duplicate requests.
+ */
+public class HedgedReadFileSystem extends FilterFileSystem {
+
+    private static final int WINDOW = 512;
+    private static final int MIN_SAMPLES = 32;
+    private static final double MAX_BUDGET = 10;
+
+    private record Attempt(byte[] buffer, int read, boolean hedge) {}
+
+    private final double percentile;
+    private final double budgetPerRead;
+    private final long minThresholdNanos;
+    private final Map<Integer, LatencyWindow> windows = new ConcurrentHashMap<>();
+    private final ExecutorService executor = Executors.newCachedThreadPool(
+            Thread.ofPlatform().name("hdfs-hedged-read-", 0).daemon().factory());
+    private double budget;
+
+    /**
+     * @param percentile   latency percentile above which a read is hedged
+     * @param budget       fraction of the reads that may be hedged
+     * @param minThreshold never hedge reads faster than this
+     */
+    public HedgedReadFileSystem(FileSystem fs, double percentile, double budget, Duration minThreshold) {
+        super(fs);
+        setConf(fs.getConf());
+        this.percentile = percentile;
+        this.budgetPerRead = budget;
+        this.minThresholdNanos = minThreshold.toNanos();
+    }
+
+    @Override
+    public FSDataInputStream open(Path f, int bufferSize) throws IOException {
+        return new FSDataInputStream(new HedgedInputStream(fs.open(f, bufferSize), f, bufferSize));
+    }
+
+    @Override
+    public void close() throws IOException {
+        executor.shutdownNow();
+        super.close();
+    }
+
+    private synchronized boolean tryAcquireHedge() {
+        if (budget < 1) {
+            return false;
+        }
+        budget -= 1;
+        return true;
+    }
+
+    private synchronized void deposit() {
+        budget = Math.min(MAX_BUDGET, budget + budgetPerRead);
+    }
+
+    private LatencyWindow window(int size) {
+        // sizes are grouped by power of two
+        return windows.computeIfAbsent(32 - Integer.numberOfLeadingZeros(size), k -> new LatencyWindow());
+    }
+
+    private final class LatencyWindow {
+        private final long[] samples = new long[WINDOW];
+        private int count;
+        private int next;
+        private long threshold = Long.MAX_VALUE;
+
+        synchronized void record(long nanos) {
+            samples[next] = nanos;
+            next = (next + 1) % WINDOW;
+            count = Math.min(count + 1, WINDOW);
+            if (count >= MIN_SAMPLES && next % MIN_SAMPLES == 0) {
+                long[] sorted = Arrays.copyOf(samples, count);
+                Arrays.sort(sorted);
+                int index = (int) Math.ceil(percentile / 100 * count) - 1;
+                threshold = Math.max(minThresholdNanos, sorted[Math.max(index, 0)]);
+            }
+        }
+
+        /**
+         * {@link Long#MAX_VALUE} until enough reads have been seen.
+         */
+        synchronized long threshold() {
+            return threshold;
+        }
+    }
+
+    /**
+     * Whether the positional reads of this stream are hedged.
+     */
+    static boolean isHedged(InputStream in) {
+        return in instanceof FSDataInputStream data && data.getWrappedStream() instanceof HedgedInputStream;
+    }
+
+    /**
+     * The HDFS stream under the wrappers of this package and of Hadoop, null if the stream is not read from HDFS.
+     */
+    private static DFSInputStream blocks(InputStream in) {
+        while (true) {
+            if (in instanceof DFSInputStream dfs) {
+                return dfs;
+            } else if (in instanceof FSDataInputStream data) {
+                in = data.getWrappedStream();
+            } else if (in instanceof TracingFileSystem.TracingInputStream tracing) {
+                in = tracing.getWrappedStream();
+            } else {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Also forwards the optional interfaces of HDFS streams, callers check them before using faster read paths.
+     */
+    private class HedgedInputStream extends FSInputStream implements ByteBufferReadable, CanUnbuffer, StreamCapabilities {
+        private final FSDataInputStream primary;
+        private final Path path;
+        private final int bufferSize;
+        private final Object exclusions = new Object();
+        private FSDataInputStream secondary;
+
+        HedgedInputStream(FSDataInputStream primary, Path path, int bufferSize) {
+            this.primary = primary;
+            this.path = path;
+            this.bufferSize = bufferSize;
+        }
+
+        private synchronized FSDataInputStream secondary() throws IOException {
+            if (secondary == null) {
+                secondary = fs.open(path, bufferSize);
+            }
+            return secondary;
+        }
+
+        private Attempt attempt(boolean hedge, long position, int length) throws IOException {
+            byte[] buffer = new byte[length];
+            if (!hedge) {
+                return new Attempt(buffer, primary.read(position, buffer, 0, length), false);
+            }
+            var in = secondary();
+            DFSInputStream primaryBlocks = blocks(primary);
+            DFSInputStream secondaryBlocks = blocks(in);
+            DatanodeInfo slow = primaryBlocks != null && secondaryBlocks != null
+                    ? DFSReplicas.chosenNode(primaryBlocks, position) : null;
+            if (slow == null) {
+                return new Attempt(buffer, in.read(position, buffer, 0, length), true);
+            }
+            // concurrent hedges on the same stream must not put back a node another one excluded
+            synchronized (exclusions) {
+                boolean excluded = DFSReplicas.exclude(secondaryBlocks, slow);
+                try {
+                    return new Attempt(buffer, in.read(position, buffer, 0, length), true);
+                } finally {
+                    if (excluded) {
+                        DFSReplicas.include(secondaryBlocks, slow);
+                    }
+                }
+            }
+        }
+
+        @Override
+        public int read(long position, byte[] buffer, int offset, int length) throws IOException {
+            LatencyWindow window = window(length);
+            long threshold = window.threshold();
+            deposit();
+            long start = System.nanoTime();
+
+            if (threshold == Long.MAX_VALUE) {
+                int read = primary.read(position, buffer, offset, length);
+                window.record(System.nanoTime() - start);
+                return read;
+            }
+
+            CompletionService<Attempt> attempts = new ExecutorCompletionService<>(executor);
+            try {
+                attempts.submit(() -> attempt(false, position, length));
+                int pending = 1;
+                boolean hedged = false;
+                Future<Attempt> done = attempts.poll(threshold, TimeUnit.NANOSECONDS);
+                if (done == null && tryAcquireHedge()) {
+                    attempts.submit(() -> attempt(true, position, length));
+                    pending++;
+                    hedged = true;
+                }
+
+                IOException failure = null;
+                while (pending > 0) {
+                    if (done == null) {
+                        done = attempts.take();
+                    }
+                    pending--;
+                    try {
+                        Attempt attempt = done.get();
+                        window.record(System.nanoTime() - start);
+                        if (attempt.read > 0) {
+                            System.arraycopy(attempt.buffer, 0, buffer, offset, attempt.read);
+                        }
+                        if (hedged) {
+                            var event = new HedgedReadEvent();
+                            event.path = path.toUri().getPath();
+                            event.size = length;
+                            event.offset = position;
+                            event.threshold = threshold;
+                            event.hedgeWon = attempt.hedge;
+                            event.commit();
+                        }
+                        return attempt.read;
+                    } catch (ExecutionException e) {
+                        failure = e.getCause() instanceof IOException io ? io : new IOException(e.getCause());
+                        done = null;
+                    }
+                }
+                throw failure;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while reading " + path);
+            }
+        }
+
+        @Override
+        public int read() throws IOException {
+            return primary.read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return primary.read(b, off, len);
+        }
+
+        @Override
+        public int read(ByteBuffer buf) throws IOException {
+            return primary.read(buf);
+        }
+
+        @Override
+        public synchronized void unbuffer() {
+            primary.unbuffer();
+            if (secondary != null) {
+                secondary.unbuffer();
+            }
+        }
+
+        @Override
+        public boolean hasCapability(String capability) {
+            return switch (capability.toLowerCase()) {
+                case StreamCapabilities.READBYTEBUFFER, StreamCapabilities.UNBUFFER -> primary.hasCapability(capability);
+                default -> false;
+            };
+        }
+
+        @Override
+        public void seek(long pos) throws IOException {
+            primary.seek(pos);
+        }
+
+        @Override
+        public long getPos() throws IOException {
+            return primary.getPos();
+        }
+
+        @Override
+        public boolean seekToNewSource(long targetPos) throws IOException {
+            return primary.seekToNewSource(targetPos);
+        }
+
+        @Override
+        public int available() throws IOException {
+            return primary.available();
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            primary.close();
+            if (secondary != null) {
+                secondary.close();
+            }
+        }
+    }
+
+}
@@ -10,13 +10,23 @@ import picocli.CommandLine.Parameters;
 import picocli.CommandLine.Option;
 
 import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 @Command(name = "hdfs-mount", description = "Mount HDFS file system")
 public class Main implements Callable<Integer> {
 
+    /** Default of the max_threads option of libfuse 3.12+. */
+    private static final int LIBFUSE_MAX_THREADS = 10;
+
+    /** fusermount attempts, 100 ms apart, before giving up on unmounting. */
+    private static final int UNMOUNT_ATTEMPTS = 50;
+
     @Parameters(index = "0", description = "HDFS server URI, hdfs://<host>:<port> or webhdfs://<host>:<port>")
     private String server;
 
@@ -41,9 +51,81 @@ public class Main implements Callable<Integer> {
     @Option(names = {"-d", "--debug"}, description = "enable fuse debug mode")
     private boolean debug;
 
+    @Option(names = {"--jfr"}, description = "record FUSE and HDFS call events to this JFR file while mounted")
+    private Path jfrFile;
+
+    @Option(names = {"--jfr-signal"}, description = "signal starting/stopping a JFR recording on the running mount, default is USR1", defaultValue = "USR1")
+    private String jfrSignal;
+
+    @Option(names = {"--jfr-threshold"}, description = "only record events slower than this many milliseconds, default is 0", defaultValue = "0")
+    private long jfrThresholdMillis;
+
+    @Option(names = {"-s", "--single-threaded"}, description = "run the FUSE loop on a single thread")
+    private boolean singleThreaded;
+
+    @Option(names = {"--max-idle-threads"}, description = "maximum number of idle FUSE loop threads kept around, default is the libfuse default")
+    private Integer maxIdleThreads;
+
+    @Option(names = {"--max-threads"}, description = "maximum number of FUSE loop threads (libfuse 3.12+), default is the libfuse default")
+    private Integer maxThreads;
+
+    @Option(names = {"--clone-fd"}, description = "use a separate /dev/fuse descriptor per FUSE loop thread")
+    private boolean cloneFd;
+
+    @Option(names = {"--max-concurrent"}, description = "maximum in-flight operations per class (LOOKUP, LISTING, MUTATION, READ, WRITE), eg. --max-concurrent LISTING=4")
+    private Map<OpClass, Integer> maxConcurrent = Map.of();
+
+    @Option(names = {"--max-waiting"}, description = "maximum operations waiting for --max-concurrent, each on a FUSE loop thread, others fail with EAGAIN, default is 4", defaultValue = "4")
+    private int maxWaiting;
+
+    @Option(names = {"--rate-limit"}, description = "maximum NameNode calls per second per class (LOOKUP, LISTING, MUTATION), eg. --rate-limit LISTING=200")
+    private Map<OpClass, Double> rateLimits = Map.of();
+
+    @Option(names = {"--namenode-rate"}, description = "maximum metadata calls per second sent to the NameNode, default is 0 (no limit)", defaultValue = "0")
+    private double namenodeRate;
+
+    @Option(names = {"--interactive-reserve"}, description = "fraction of --namenode-rate kept for lookups (getattr, open, statfs), default is 0.2", defaultValue = "0.2")
+    private double interactiveReserve;
+
+    @Option(names = {"--max-throttled"}, description = "maximum listings and mutations waiting for a rate limit, each on a FUSE loop thread, others fail with EAGAIN, default is 4", defaultValue = "4")
+    private int maxThrottled;
+
+    @Option(names = {"--clients"}, description = "number of independent HDFS clients, each with its own NameNode connection, default is 1", defaultValue = "1")
+    private int clients;
+
+    @Option(names = {"--routing"}, description = "how operations are spread over the clients: PATH_HASH or LEAST_LOADED, default is LEAST_LOADED", defaultValue = "LEAST_LOADED")
+    private ShardedFileSystem.Routing routing;
+
+    @Option(names = {"--hedged-reads"}, description = "retry slow positional reads on another replica, first answer wins")
+    private boolean hedgedReads;
+
+    @Option(names = {"--hedge-percentile"}, description = "latency percentile, per read size, above which a read is hedged, default is 95", defaultValue = "95")
+    private double hedgePercentile;
+
+    @Option(names = {"--hedge-budget"}, description = "fraction of the reads that may be hedged, default is 0.05", defaultValue = "0.05")
+    private double hedgeBudget;
+
+    @Option(names = {"--hedge-min-ms"}, description = "never hedge reads faster than this many milliseconds, default is 10", defaultValue = "10")
+    private long hedgeMinMillis;
+
+    @Option(names = {"--flush"}, description = "durability of FUSE flushes: NONE, HFLUSH (DataNode memory) or HSYNC (DataNode disk), default is HFLUSH", defaultValue = "HFLUSH")
+    private GroupCommitFlusher.Durability flushDurability;
+
+    @Option(names = {"--group-commit-ms"}, description = "batch the flushes and fsyncs received within this many milliseconds, default is 0 (sync on every call)", defaultValue = "0")
+    private long groupCommitMillis;
+
+    @Option(names = {"--connect-timeout"}, description = "seconds operations wait for HDFS after mounting, then they fail until it is reachable, default is 30", defaultValue = "30")
+    private long connectTimeoutSeconds;
+
     @Parameters(index = "2..*", description = "FUSE options. eg. -o allow_other,ro")
     private final List<String> fuseOptions = new ArrayList<>();
 
+    private MetadataScheduler scheduler;
+
+    private boolean rateLimited() {
+        return namenodeRate > 0 || !rateLimits.isEmpty();
+    }
+
     @Override
     public Integer call() throws Exception {
 
@@ -60,6 +142,25 @@ public class Main implements Callable<Integer> {
             }
         }
 
+        for (var limit : maxConcurrent.entrySet()) {
+            if (limit.getValue() < 1) {
+                System.err.println("--max-concurrent " + limit.getKey() + " must be at least 1");
+                return 1;
+            }
+        }
+        if (rateLimited() && singleThreaded) {
+            System.err.println("Rate limits need a multi-threaded FUSE loop, remove -s");
+            return 1;
+        }
+        // waiting operations hold FUSE loop threads, some must stay free for the other operations
+        int parked = (rateLimited() ? maxThrottled : 0) + (maxConcurrent.isEmpty() ? 0 : maxWaiting);
+        int loopThreads = maxThreads != null ? maxThreads : LIBFUSE_MAX_THREADS;
+        if (!singleThreaded && parked >= loopThreads) {
+            System.err.println("--max-throttled and --max-waiting must leave some of the " + loopThreads
+                    + " FUSE loop threads (--max-threads) free");
+            return 1;
+        }
+
         var mountPointFile = new java.io.File(mountPoint);
         if (!mountPointFile.exists()) {
             if (!mountPointFile.mkdirs()) {
@@ -68,25 +169,123 @@ public class Main implements Callable<Integer> {
             }
         }
 
-        Configuration conf = new HdfsConfiguration();
-        conf.set("fs.defaultFS", server);
+        var jfrDestination = jfrFile != null ? jfrFile : Path.of("hdfs-mount-" + ProcessHandle.current().pid() + ".jfr");
+        var recorder = new FlightRecorderControl(jfrDestination, Duration.ofMillis(jfrThresholdMillis));
+        recorder.installSignalHandler(jfrSignal);
+        if (jfrFile != null) {
+            recorder.start();
+        }
 
-        try {
-            var fs = FileSystem.get(conf);
+        scheduler = new MetadataScheduler(rateLimits, namenodeRate, interactiveReserve, maxThrottled);
 
-            HdfsFuseOperations fuseOps = new HdfsFuseOperations(fs);
+        // the mount does not wait for HDFS, early operations wait for the connection instead
+        var connection = NameNodeConnection.start(this::connect);
+        connection.thenRun(() -> System.err.println("Connected to " + server));
+        var loopExited = new AtomicBoolean();
+        connection.exceptionally(e -> {
+            System.err.println("Cannot connect to " + server + ", unmounting " + mountPoint);
+            unmount(loopExited);
+            return null;
+        });
+
+        var limiter = new ConcurrencyLimiter(maxConcurrent, maxWaiting);
+        try (var flusher = new GroupCommitFlusher(flushDurability, Duration.ofMillis(groupCommitMillis))) {
+            HdfsFuseOperations fuseOps = new HdfsFuseOperations(connection, Duration.ofSeconds(connectTimeoutSeconds), limiter, scheduler, flusher);
             FuseNative fuse = new FuseNative(fuseOps);
-            fuse.mount(mountPoint, debug, fuseOptions);
-        } catch (IOException e) {
-            throw new RuntimeException(e);
+            fuse.mount(mountPoint, debug, loopOptions());
+        } finally {
+            loopExited.set(true);
+            recorder.stop();
+        }
+
+        return connection.isCompletedExceptionally() ? 1 : 0;
+    }
+
+    /**
+     * Makes the FUSE loop return, retrying while the mount is still being set up.
+     */
+    /**
+     * Unmounts with fusermount, retrying while the mount is not up yet, and exits with an error if it cannot.
+     */
+    private void unmount(AtomicBoolean loopExited) {
+        String failure = "neither fusermount3 nor fusermount is installed";
+        boolean installed = false;
+        for (int attempt = 0; attempt < UNMOUNT_ATTEMPTS && !loopExited.get(); attempt++) {
+            for (var command : List.of("fusermount3", "fusermount")) {
+                try {
+                    Process process = new ProcessBuilder(command, "-u", mountPoint)
+                            .redirectErrorStream(true)
+                            .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                            .start();
+                    installed = true;
+                    int exitCode = process.waitFor();
+                    if (exitCode == 0) {
+                        return;
+                    }
+                    failure = command + " exited with " + exitCode;
+                    break;
+                } catch (IOException e) {
+                    // not installed, try the other one
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+            if (!installed) {
+                break; // retrying will not help
+            }
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        if (!loopExited.get()) {
+            System.err.println("Cannot unmount " + mountPoint + ": " + failure + ", exiting");
+            System.exit(1);
+        }
+    }
+
+    private FileSystem connect() throws IOException {
+        Configuration conf = new HdfsConfiguration();
+        conf.set("fs.defaultFS", server);
+
+        var client = clients > 1 ? ShardedFileSystem.newInstance(conf, clients, routing) : FileSystem.get(conf);
+        FileSystem fs = new TracingFileSystem(client);
+        if (rateLimited()) {
+            fs = new RateLimitedFileSystem(fs, scheduler);
+        }
+        if (hedgedReads) {
+            fs = new HedgedReadFileSystem(fs, hedgePercentile, hedgeBudget, Duration.ofMillis(hedgeMinMillis));
         }
+        return fs;
+    }
 
-        return 0;
+    private List<String> loopOptions() {
+        List<String> options = new ArrayList<>(fuseOptions);
+        if (singleThreaded) {
+            options.add("-s");
+        }
+        if (maxIdleThreads != null) {
+            options.add("-o");
+            options.add("max_idle_threads=" + maxIdleThreads);
+        }
+        if (maxThreads != null) {
+            options.add("-o");
+            options.add("max_threads=" + maxThreads);
+        }
+        if (cloneFd) {
+            options.add("-o");
+            options.add("clone_fd");
+        }
+        return options;
     }
 
     public static void main(String[] args) {
         int exitCode = new CommandLine(new Main())
                 .setStopAtPositional(true)
+                .setCaseInsensitiveEnumValuesAllowed(true)
                 .execute(args);
         System.exit(exitCode);
     }
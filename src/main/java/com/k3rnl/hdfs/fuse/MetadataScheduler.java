@@ -0,0 +1,272 @@
+package com.k3rnl.hdfs.fuse;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.IntSupplier;
+
+/**
+ * Rate limits the calls sent to the NameNode with token buckets, one per metadata {@link OpClass}
+ * and one shared by all of them.
+ * <p>
+ * A FUSE operation is throttled once, when it is admitted (see {@link #admit}): it waits for its first token
+ * before sending anything, and its other calls are sent right away, their tokens being taken from the buckets
+ * even if they go below zero, which delays the next operations. An operation is never failed or held up
+ * halfway, e.g. after creating a file and before opening it. Calls are charged to the class of the operation
+ * making them, so the lookups done by an unlink count as a mutation.
+ * <p>
+ * Interactive lookups have priority: they are admitted before waiting listings and mutations, which also cannot
+ * take the last tokens of the shared bucket, so a {@code find} or a recursive delete cannot starve the other users
+ * of the mount. Waiting operations of the same priority are admitted in arrival order.
+ * <p>
+ * Waiting operations hold the FUSE loop thread that received them, so at most {@code maxThrottled} listings and
+ * mutations may wait at once, others fail with a {@link ThrottledException}.
+ */
+public class MetadataScheduler {
+
+    private static final Set<OpClass> METADATA = EnumSet.of(OpClass.LOOKUP, OpClass.LISTING, OpClass.MUTATION);
+    private static final long RECHECK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    /**
+     * Thrown instead of waiting when too many listings and mutations are already waiting.
+     */
+    public static class ThrottledException extends RuntimeException {
+        public ThrottledException(OpClass opClass) {
+            super("Too many " + opClass + " calls waiting for the NameNode rate limit");
+        }
+    }
+
+    private final Map<OpClass, TokenBucket> buckets = new EnumMap<>(OpClass.class);
+    private final TokenBucket namenode;
+    private final double reserved;
+    private final int maxThrottled;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition served = lock.newCondition();
+    private final List<Waiter> waiting = new ArrayList<>();
+    private final ThreadLocal<Operation> operation = new ThreadLocal<>();
+    private int throttled;
+
+    /**
+     * @param rates              calls per second allowed for each metadata class
+     * @param namenodeRate       calls per second allowed for all metadata classes together, 0 for no limit
+     * @param interactiveReserve fraction of the shared bucket only lookups can use
+     * @param maxThrottled       listings and mutations allowed to wait at once
+     */
+    public MetadataScheduler(Map<OpClass, Double> rates, double namenodeRate, double interactiveReserve, int maxThrottled) {
+        rates.forEach((opClass, rate) -> {
+            if (!METADATA.contains(opClass)) {
+                throw new IllegalArgumentException("Only LOOKUP, LISTING and MUTATION operations can be rate limited");
+            }
+            buckets.put(opClass, new TokenBucket(rate));
+        });
+        this.namenode = namenodeRate > 0 ? new TokenBucket(namenodeRate) : null;
+        // listings and mutations must still be able to take a token when the bucket is full
+        this.reserved = namenode != null ? Math.min(interactiveReserve * namenode.capacity, namenode.capacity - 1) : 0;
+        this.maxThrottled = maxThrottled;
+    }
+
+    public static MetadataScheduler unlimited() {
+        return new MetadataScheduler(Map.of(), 0, 0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Runs a FUSE operation of this class once it is admitted, the NameNode calls it makes on this thread
+     * are charged to it without waiting.
+     *
+     * @throws ThrottledException if the operation would wait and too many listings and mutations are already waiting
+     */
+    public int admit(OpClass opClass, IntSupplier call) throws InterruptedException {
+        var admitted = new Operation(opClass, limited(opClass) ? 1 : 0);
+        if (admitted.credit > 0) {
+            await(opClass);
+        }
+        Operation previous = operation.get();
+        operation.set(admitted);
+        try {
+            return call.getAsInt();
+        } finally {
+            operation.set(previous);
+            if (admitted.credit > 0) {
+                refund(opClass); // the operation did not call the NameNode
+            }
+        }
+    }
+
+    /**
+     * Takes the token of a NameNode call. Within an admitted operation it never waits, otherwise it waits
+     * like an operation being admitted.
+     *
+     * @throws ThrottledException if the call would wait and too many listings and mutations are already waiting
+     */
+    public void acquire(OpClass callClass) throws InterruptedException {
+        Operation current = operation.get();
+        if (current == null) {
+            if (limited(callClass)) {
+                await(callClass);
+            }
+            return;
+        }
+        if (current.credit > 0) {
+            current.credit--; // taken when the operation was admitted
+            return;
+        }
+        OpClass opClass = METADATA.contains(current.opClass) ? current.opClass : callClass;
+        if (limited(opClass)) {
+            lock.lock();
+            try {
+                take(new Waiter(opClass == OpClass.LOOKUP, buckets.get(opClass)));
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private boolean limited(OpClass opClass) {
+        return METADATA.contains(opClass) && (buckets.containsKey(opClass) || namenode != null);
+    }
+
+    private void await(OpClass opClass) throws InterruptedException {
+        var waiter = new Waiter(opClass == OpClass.LOOKUP, buckets.get(opClass));
+        lock.lock();
+        try {
+            long now = System.nanoTime();
+            if (!waiter.lookup && throttled >= maxThrottled && (tokenWait(waiter, now) > 0 || mustYield(waiter, now))) {
+                throw new ThrottledException(opClass);
+            }
+            waiting.add(waiter);
+            if (!waiter.lookup) {
+                throttled++;
+            }
+            try {
+                while (true) {
+                    now = System.nanoTime();
+                    long wait = tokenWait(waiter, now);
+                    if (wait == 0 && !mustYield(waiter, now)) {
+                        take(waiter);
+                        return;
+                    }
+                    served.awaitNanos(wait > 0 ? wait : RECHECK_NANOS);
+                }
+            } finally {
+                waiting.remove(waiter);
+                if (!waiter.lookup) {
+                    throttled--;
+                }
+                served.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void refund(OpClass opClass) {
+        lock.lock();
+        try {
+            var bucket = buckets.get(opClass);
+            if (bucket != null) {
+                bucket.tokens += 1;
+            }
+            if (namenode != null) {
+                namenode.tokens += 1;
+            }
+            served.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return nanoseconds before the tokens of this call are available, regardless of the other waiting calls
+     */
+    private long tokenWait(Waiter waiter, long now) {
+        long wait = waiter.bucket != null ? waiter.bucket.waitFor(now, 0) : 0;
+        if (namenode != null) {
+            wait = Math.max(wait, namenode.waitFor(now, waiter.lookup ? 0 : reserved));
+        }
+        return wait;
+    }
+
+    /**
+     * Whether a call that goes first, a lookup or an older call of the same priority, could be served now.
+     */
+    private boolean mustYield(Waiter waiter, long now) {
+        boolean older = true;
+        for (var other : waiting) {
+            if (other == waiter) {
+                older = false;
+            } else if ((other.lookup && !waiter.lookup || older && other.lookup == waiter.lookup)
+                    && tokenWait(other, now) == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void take(Waiter waiter) {
+        if (waiter.bucket != null) {
+            waiter.bucket.tokens -= 1;
+        }
+        if (namenode != null) {
+            namenode.tokens -= 1;
+        }
+    }
+
+    /**
+     * An admitted operation, with the token taken for its first call until it is used.
+     */
+    private static final class Operation {
+        final OpClass opClass;
+        int credit;
+
+        Operation(OpClass opClass, int credit) {
+            this.opClass = opClass;
+            this.credit = credit;
+        }
+    }
+
+    /**
+     * A waiting operation or call, compared by identity.
+     */
+    private static final class Waiter {
+        final boolean lookup;
+        final TokenBucket bucket;
+
+        Waiter(boolean lookup, TokenBucket bucket) {
+            this.lookup = lookup;
+            this.bucket = bucket;
+        }
+    }
+
+    /**
+     * Holds up to one second of calls.
+     */
+    private static final class TokenBucket {
+        private final double perNano;
+        private final double capacity;
+        private double tokens;
+        private long refilled = System.nanoTime();
+
+        TokenBucket(double perSecond) {
+            this.perNano = perSecond / TimeUnit.SECONDS.toNanos(1);
+            this.capacity = Math.max(1, perSecond);
+            this.tokens = capacity;
+        }
+
+        /**
+         * @return nanoseconds before a token can be taken without going below {@code floor}
+         */
+        long waitFor(long now, double floor) {
+            tokens = Math.min(capacity, tokens + (now - refilled) * perNano);
+            refilled = now;
+            double missing = floor + 1 - tokens;
+            return missing <= 0 ? 0 : Math.max(1, (long) Math.ceil(missing / perNano));
+        }
+    }
+
+}
@@ -0,0 +1,93 @@
+package com.k3rnl.hdfs.fuse;
+
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.ipc.RemoteException;
+import org.apache.hadoop.ipc.RetriableException;
+import org.apache.hadoop.ipc.StandbyException;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Connects to HDFS in the background so the mount does not wait for Hadoop to load its configuration
+ * or for the NameNode to answer. Retries with a backoff while the NameNode is unreachable, other errors
+ * (bad URI, unknown scheme, access denied, failed login...) fail the connection at once.
+ */
+public final class NameNodeConnection {
+
+    private static final long INITIAL_BACKOFF_MILLIS = 100;
+    private static final long MAX_BACKOFF_MILLIS = 30_000;
+
+    @FunctionalInterface
+    public interface Connect {
+        FileSystem connect() throws IOException;
+    }
+
+    private NameNodeConnection() {
+    }
+
+    /**
+     * @return completed with the file system once a first call to the NameNode succeeded,
+     * or exceptionally on the first error that retrying cannot fix
+     */
+    public static CompletableFuture<FileSystem> start(Connect connect) {
+        var connection = new CompletableFuture<FileSystem>();
+        Thread.ofPlatform().name("hdfs-connect").daemon().start(() -> {
+            long backoff = INITIAL_BACKOFF_MILLIS;
+            while (!connection.isDone()) {
+                try {
+                    connection.complete(connectOnce(connect));
+                } catch (IOException | RuntimeException e) {
+                    if (!isRetriable(e)) {
+                        System.err.println("Error connecting to HDFS: " + e.getMessage());
+                        connection.completeExceptionally(e);
+                        return;
+                    }
+                    System.err.println("Error connecting to HDFS, retrying in " + backoff + "ms: " + e.getMessage());
+                    try {
+                        Thread.sleep(backoff);
+                    } catch (InterruptedException interrupted) {
+                        connection.completeExceptionally(interrupted);
+                        return;
+                    }
+                    backoff = Math.min(backoff * 2, MAX_BACKOFF_MILLIS);
+                }
+            }
+        });
+        return connection;
+    }
+
+    private static FileSystem connectOnce(Connect connect) throws IOException {
+        FileSystem fs = connect.connect();
+        try {
+            fs.getFileStatus(new Path("/"));
+        } catch (IOException | RuntimeException e) {
+            fs.close();
+            throw e;
+        }
+        return fs;
+    }
+
+    /**
+     * Whether the error comes from a NameNode that is down, unreachable or not active yet.
+     */
+    static boolean isRetriable(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof RemoteException remote) {
+                cause = remote.unwrapRemoteException(RetriableException.class, StandbyException.class);
+            }
+            if (cause instanceof SocketException || cause instanceof SocketTimeoutException
+                    || cause instanceof UnknownHostException || cause instanceof EOFException
+                    || cause instanceof RetriableException || cause instanceof StandbyException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
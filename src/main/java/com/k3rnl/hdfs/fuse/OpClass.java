@@ -0,0 +1,17 @@
+package com.k3rnl.hdfs.fuse;
+
+/**
+ * Groups FUSE operations by the kind of work they cause on HDFS.
+ */
+public enum OpClass {
+    /** Single path NameNode lookups: getattr, open, statfs, xattrs. */
+    LOOKUP,
+    /** Directory listings. */
+    LISTING,
+    /** NameNode mutations: create, mkdir, delete, rename, permissions, times. */
+    MUTATION,
+    /** DataNode reads. */
+    READ,
+    /** DataNode writes, flushes and closes of written files. */
+    WRITE
+}
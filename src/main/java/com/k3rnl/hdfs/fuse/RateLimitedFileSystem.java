@@ -0,0 +1,126 @@
+package com.k3rnl.hdfs.fuse;
+
+import org.apache.hadoop.fs.*;
+import org.apache.hadoop.fs.permission.FsPermission;
+import org.apache.hadoop.util.Progressable;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.EnumSet;
+
+/**
+ * Takes a {@link MetadataScheduler} token before every call sent to the NameNode,
+ * so the rate limits count NameNode calls rather than FUSE operations. Only calls made outside
+ * of an admitted operation can wait or be throttled.
+ */
+public class RateLimitedFileSystem extends FilterFileSystem {
+
+    private final MetadataScheduler scheduler;
+
+    public RateLimitedFileSystem(FileSystem fs, MetadataScheduler scheduler) {
+        super(fs);
+        setConf(fs.getConf());
+        this.scheduler = scheduler;
+    }
+
+    private void acquire(OpClass callClass, Path path) throws IOException {
+        try {
+            scheduler.acquire(callClass);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the NameNode rate limit: " + path);
+        }
+    }
+
+    @Override
+    public FileStatus getFileStatus(Path f) throws IOException {
+        acquire(OpClass.LOOKUP, f);
+        return super.getFileStatus(f);
+    }
+
+    @Override
+    public FileStatus[] listStatus(Path f) throws IOException {
+        acquire(OpClass.LISTING, f);
+        return super.listStatus(f);
+    }
+
+    @Override
+    public FSDataInputStream open(Path f, int bufferSize) throws IOException {
+        acquire(OpClass.LOOKUP, f);
+        return super.open(f, bufferSize);
+    }
+
+    @Override
+    public FSDataOutputStream create(Path f, FsPermission permission, boolean overwrite, int bufferSize,
+                                     short replication, long blockSize, Progressable progress) throws IOException {
+        acquire(OpClass.MUTATION, f);
+        return super.create(f, permission, overwrite, bufferSize, replication, blockSize, progress);
+    }
+
+    @Override
+    public FSDataOutputStream append(Path f, int bufferSize, Progressable progress) throws IOException {
+        acquire(OpClass.MUTATION, f);
+        return super.append(f, bufferSize, progress);
+    }
+
+    @Override
+    public boolean delete(Path f, boolean recursive) throws IOException {
+        acquire(OpClass.MUTATION, f);
+        return super.delete(f, recursive);
+    }
+
+    @Override
+    public boolean rename(Path src, Path dst) throws IOException {
+        acquire(OpClass.MUTATION, src);
+        return super.rename(src, dst);
+    }
+
+    @Override
+    public boolean mkdirs(Path f, FsPermission permission) throws IOException {
+        acquire(OpClass.MUTATION, f);
+        return super.mkdirs(f, permission);
+    }
+
+    @Override
+    public void setTimes(Path p, long mtime, long atime) throws IOException {
+        acquire(OpClass.MUTATION, p);
+        super.setTimes(p, mtime, atime);
+    }
+
+    @Override
+    public void setPermission(Path p, FsPermission permission) throws IOException {
+        acquire(OpClass.MUTATION, p);
+        super.setPermission(p, permission);
+    }
+
+    @Override
+    public boolean truncate(Path f, long newLength) throws IOException {
+        acquire(OpClass.MUTATION, f);
+        return super.truncate(f, newLength);
+    }
+
+    @Override
+    public FsStatus getStatus(Path p) throws IOException {
+        acquire(OpClass.LOOKUP, p);
+        return super.getStatus(p);
+    }
+
+    @Override
+    public byte[] getXAttr(Path path, String name) throws IOException {
+        acquire(OpClass.LOOKUP, path);
+        return super.getXAttr(path, name);
+    }
+
+    @Override
+    public void setXAttr(Path path, String name, byte[] value, EnumSet<XAttrSetFlag> flag) throws IOException {
+        acquire(OpClass.MUTATION, path);
+        super.setXAttr(path, name, value, flag);
+    }
+
+    @Override
+    public void removeXAttr(Path path, String name) throws IOException {
+        acquire(OpClass.MUTATION, path);
+        super.removeXAttr(path, name);
+    }
+
+}
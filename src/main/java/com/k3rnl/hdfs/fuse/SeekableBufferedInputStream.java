@@ -1,5 +1,6 @@
 package com.k3rnl.hdfs.fuse;
 
+import org.apache.hadoop.fs.PositionedReadable;
 import org.apache.hadoop.fs.Seekable;
 
 import java.io.IOException;
@@ -30,6 +31,7 @@ public class SeekableBufferedInputStream extends InputStream implements Seekable
     final int capacity;
 
     long position = 0;
+    long partLoads = 0;
 
     public SeekableBufferedInputStream(InputStream in, int bufferSize, int capacity) {
         this.in = in;
@@ -56,8 +58,18 @@ public class SeekableBufferedInputStream extends InputStream implements Seekable
     private StreamPart nextPart() throws IOException {
         pruneParts();
 
+        long partStart = (long) parts.size() * bufferSize;
         byte[] buffer = new byte[bufferSize];
-        int read = in.readNBytes(buffer, 0, bufferSize);
+        int read;
+        if (HedgedReadFileSystem.isHedged(in)) {
+            read = readAt(partStart, buffer); // only positional reads are hedged, streaming reads are faster otherwise
+        } else {
+            if (in instanceof Seekable seekable && seekable.getPos() != partStart) {
+                seekable.seek(partStart); // parts were loaded out of order
+            }
+            read = in.readNBytes(buffer, 0, bufferSize);
+        }
+        partLoads++;
         if (read == -1) {
             return null; // EOF
         }
@@ -65,17 +77,37 @@ public class SeekableBufferedInputStream extends InputStream implements Seekable
         return parts.getLast();
     }
 
-    private StreamPart loadPart(int index) throws IOException {
+    private int readAt(long position, byte[] buffer) throws IOException {
+        if (in instanceof PositionedReadable positioned) {
+            int total = 0;
+            while (total < buffer.length) {
+                int read = positioned.read(position + total, buffer, total, buffer.length - total);
+                if (read <= 0) {
+                    break;
+                }
+                total += read;
+            }
+            return total;
+        }
         Seekable in = (Seekable) this.in;
         long pos = in.getPos();
-        in.seek((long) index * bufferSize);
-        byte[] buffer = new byte[bufferSize];
-        int read = this.in.readNBytes(buffer, 0, bufferSize);
+        in.seek(position);
+        int read = this.in.readNBytes(buffer, 0, buffer.length);
         in.seek(pos);
+        return read;
+    }
+
+    private StreamPart loadPart(int index) throws IOException {
+        byte[] buffer = new byte[bufferSize];
+        int read = readAt((long) index * bufferSize, buffer);
+        partLoads++;
         if (read == -1) {
             return null; // EOF
         }
         var part = new StreamPart(buffer, read);
+        while (parts.size() < index) {
+            parts.add(null); // skipped parts are loaded on demand
+        }
         if (index == parts.size())
             parts.add(part);
         else
@@ -114,12 +146,6 @@ public class SeekableBufferedInputStream extends InputStream implements Seekable
     public int read(byte[] b, int off, int len) throws IOException {
         int partIndex = (int) (position / bufferSize);
 
-        if (partIndex >= parts.size()) {
-            if (nextPart() == null) {
-                return -1; // EOF
-            }
-        }
-
         StreamPart part = getPart(partIndex);
         if (part == null) {
             return -1; // EOF
@@ -146,7 +172,7 @@ public class SeekableBufferedInputStream extends InputStream implements Seekable
                 break; // EOF
             }
             partIndex++;
-            part = nextPart(); // Load next part as len > partRemaining
+            part = getPart(partIndex); // Load next part as len > partRemaining
             if (part == null) {
                 break; // EOF
             }
@@ -174,6 +200,10 @@ public class SeekableBufferedInputStream extends InputStream implements Seekable
         return position;
     }
 
+    public long partLoads() {
+        return partLoads;
+    }
+
     @Override
     public boolean seekToNewSource(long targetPos) throws IOException {
         return false;
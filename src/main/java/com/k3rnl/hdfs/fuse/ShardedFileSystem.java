@@ -0,0 +1,186 @@
+package com.k3rnl.hdfs.fuse;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.*;
+import org.apache.hadoop.fs.permission.FsPermission;
+import org.apache.hadoop.util.Progressable;
+
+import java.io.IOException;
+import java.util.EnumSet;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static org.apache.hadoop.fs.CommonConfigurationKeysPublic.IPC_CLIENT_CONNECTION_MAXIDLETIME_DEFAULT;
+import static org.apache.hadoop.fs.CommonConfigurationKeysPublic.IPC_CLIENT_CONNECTION_MAXIDLETIME_KEY;
+
+/**
+ * Spreads the calls made to HDFS over several independent clients, each with its own NameNode connection,
+ * so metadata operations are not all serialized behind a single {@code DFSClient}.
+ * <p>
+ * Streams stay on the client that opened them. Calls not overridden here go to the first client.
+ */
+public class ShardedFileSystem extends FilterFileSystem {
+
+    public enum Routing {
+        /** The same path always goes to the same client. */
+        PATH_HASH,
+        /** The client with the fewest calls in flight. */
+        LEAST_LOADED
+    }
+
+    @FunctionalInterface
+    interface ShardCall<T> {
+        T call(FileSystem fs) throws IOException;
+    }
+
+    private final FileSystem[] shards;
+    private final AtomicIntegerArray inFlight;
+    private final Routing routing;
+
+    public ShardedFileSystem(FileSystem[] shards, Routing routing) {
+        super(shards[0]);
+        setConf(shards[0].getConf());
+        this.shards = shards;
+        this.inFlight = new AtomicIntegerArray(shards.length);
+        this.routing = routing;
+    }
+
+    /**
+     * Creates {@code clients} uncached file systems for {@code conf}.
+     * <p>
+     * Hadoop shares one IPC connection between clients with the same connection settings,
+     * so each client gets a slightly different idle timeout to get a connection of its own.
+     */
+    public static ShardedFileSystem newInstance(Configuration conf, int clients, Routing routing) throws IOException {
+        int maxIdleTime = conf.getInt(IPC_CLIENT_CONNECTION_MAXIDLETIME_KEY, IPC_CLIENT_CONNECTION_MAXIDLETIME_DEFAULT);
+        FileSystem[] shards = new FileSystem[clients];
+        for (int i = 0; i < clients; i++) {
+            Configuration shardConf = new Configuration(conf);
+            shardConf.setInt(IPC_CLIENT_CONNECTION_MAXIDLETIME_KEY, maxIdleTime + i);
+            shards[i] = FileSystem.newInstance(shardConf);
+        }
+        return new ShardedFileSystem(shards, routing);
+    }
+
+    private int shard(Path path) {
+        if (routing == Routing.PATH_HASH) {
+            return Math.floorMod(path.toUri().getPath().hashCode(), shards.length);
+        }
+        int start = ThreadLocalRandom.current().nextInt(shards.length);
+        int best = start;
+        for (int i = 1; i < shards.length; i++) {
+            int candidate = (start + i) % shards.length;
+            if (inFlight.get(candidate) < inFlight.get(best)) {
+                best = candidate;
+            }
+        }
+        return best;
+    }
+
+    private <T> T route(Path path, ShardCall<T> call) throws IOException {
+        int shard = shard(path);
+        inFlight.incrementAndGet(shard);
+        try {
+            return call.call(shards[shard]);
+        } finally {
+            inFlight.decrementAndGet(shard);
+        }
+    }
+
+    @Override
+    public FileStatus getFileStatus(Path f) throws IOException {
+        return route(f, fs -> fs.getFileStatus(f));
+    }
+
+    @Override
+    public FileStatus[] listStatus(Path f) throws IOException {
+        return route(f, fs -> fs.listStatus(f));
+    }
+
+    @Override
+    public FSDataInputStream open(Path f, int bufferSize) throws IOException {
+        return route(f, fs -> fs.open(f, bufferSize));
+    }
+
+    @Override
+    public FSDataOutputStream create(Path f, FsPermission permission, boolean overwrite, int bufferSize,
+                                     short replication, long blockSize, Progressable progress) throws IOException {
+        return route(f, fs -> fs.create(f, permission, overwrite, bufferSize, replication, blockSize, progress));
+    }
+
+    @Override
+    public FSDataOutputStream append(Path f, int bufferSize, Progressable progress) throws IOException {
+        return route(f, fs -> fs.append(f, bufferSize, progress));
+    }
+
+    @Override
+    public boolean delete(Path f, boolean recursive) throws IOException {
+        return route(f, fs -> fs.delete(f, recursive));
+    }
+
+    @Override
+    public boolean rename(Path src, Path dst) throws IOException {
+        return route(src, fs -> fs.rename(src, dst));
+    }
+
+    @Override
+    public boolean mkdirs(Path f, FsPermission permission) throws IOException {
+        return route(f, fs -> fs.mkdirs(f, permission));
+    }
+
+    @Override
+    public void setTimes(Path p, long mtime, long atime) throws IOException {
+        route(p, fs -> {
+            fs.setTimes(p, mtime, atime);
+            return null;
+        });
+    }
+
+    @Override
+    public void setPermission(Path p, FsPermission permission) throws IOException {
+        route(p, fs -> {
+            fs.setPermission(p, permission);
+            return null;
+        });
+    }
+
+    @Override
+    public boolean truncate(Path f, long newLength) throws IOException {
+        return route(f, fs -> fs.truncate(f, newLength));
+    }
+
+    @Override
+    public FsStatus getStatus(Path p) throws IOException {
+        return route(p == null ? new Path("/") : p, fs -> fs.getStatus(p));
+    }
+
+    @Override
+    public byte[] getXAttr(Path path, String name) throws IOException {
+        return route(path, fs -> fs.getXAttr(path, name));
+    }
+
+    @Override
+    public void setXAttr(Path path, String name, byte[] value, EnumSet<XAttrSetFlag> flag) throws IOException {
+        route(path, fs -> {
+            fs.setXAttr(path, name, value, flag);
+            return null;
+        });
+    }
+
+    @Override
+    public void removeXAttr(Path path, String name) throws IOException {
+        route(path, fs -> {
+            fs.removeXAttr(path, name);
+            return null;
+        });
+    }
+
+    @Override
+    public void close() throws IOException {
+        super.close();
+        for (int i = 1; i < shards.length; i++) {
+            shards[i].close();
+        }
+    }
+
+}
@@ -0,0 +1,279 @@
+package com.k3rnl.hdfs.fuse;
+
+import org.apache.hadoop.fs.*;
+import org.apache.hadoop.fs.permission.FsPermission;
+import org.apache.hadoop.util.Progressable;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.EnumSet;
+
+/**
+ * Records every call going to HDFS as a {@link HdfsCallEvent}, including the reads and flushes
+ * done on the streams it opens.
+ */
+public class TracingFileSystem extends FilterFileSystem {
+
+    @FunctionalInterface
+    interface HdfsCall<T> {
+        T call() throws IOException;
+    }
+
+    public TracingFileSystem(FileSystem fs) {
+        super(fs);
+        setConf(fs.getConf());
+    }
+
+    static <T> T trace(String op, Path path, long size, long offset, HdfsCall<T> call) throws IOException {
+        HdfsCallEvent event = new HdfsCallEvent();
+        event.begin();
+        try {
+            return call.call();
+        } catch (IOException e) {
+            event.error = e.getClass().getSimpleName();
+            throw e;
+        } finally {
+            event.end();
+            if (event.shouldCommit()) {
+                event.op = op;
+                event.path = path == null ? null : path.toUri().getPath();
+                event.size = size;
+                event.offset = offset;
+                event.commit();
+            }
+        }
+    }
+
+    @Override
+    public FileStatus getFileStatus(Path f) throws IOException {
+        return trace("getFileStatus", f, 0, 0, () -> super.getFileStatus(f));
+    }
+
+    @Override
+    public FileStatus[] listStatus(Path f) throws IOException {
+        return trace("listStatus", f, 0, 0, () -> super.listStatus(f));
+    }
+
+    @Override
+    public FSDataInputStream open(Path f, int bufferSize) throws IOException {
+        FSDataInputStream in = trace("open", f, 0, 0, () -> super.open(f, bufferSize));
+        return new FSDataInputStream(new TracingInputStream(in, f));
+    }
+
+    @Override
+    public FSDataOutputStream create(Path f, FsPermission permission, boolean overwrite, int bufferSize,
+                                     short replication, long blockSize, Progressable progress) throws IOException {
+        FSDataOutputStream out = trace("create", f, 0, 0,
+                () -> super.create(f, permission, overwrite, bufferSize, replication, blockSize, progress));
+        return new FSDataOutputStream(new TracingOutputStream(out, f), null);
+    }
+
+    @Override
+    public FSDataOutputStream append(Path f, int bufferSize, Progressable progress) throws IOException {
+        FSDataOutputStream out = trace("append", f, 0, 0, () -> super.append(f, bufferSize, progress));
+        return new FSDataOutputStream(new TracingOutputStream(out, f), null);
+    }
+
+    @Override
+    public boolean delete(Path f, boolean recursive) throws IOException {
+        return trace("delete", f, 0, 0, () -> super.delete(f, recursive));
+    }
+
+    @Override
+    public boolean rename(Path src, Path dst) throws IOException {
+        return trace("rename", src, 0, 0, () -> super.rename(src, dst));
+    }
+
+    @Override
+    public boolean mkdirs(Path f, FsPermission permission) throws IOException {
+        return trace("mkdirs", f, 0, 0, () -> super.mkdirs(f, permission));
+    }
+
+    @Override
+    public void setTimes(Path p, long mtime, long atime) throws IOException {
+        trace("setTimes", p, 0, 0, () -> {
+            super.setTimes(p, mtime, atime);
+            return null;
+        });
+    }
+
+    @Override
+    public void setPermission(Path p, FsPermission permission) throws IOException {
+        trace("setPermission", p, 0, 0, () -> {
+            super.setPermission(p, permission);
+            return null;
+        });
+    }
+
+    @Override
+    public boolean truncate(Path f, long newLength) throws IOException {
+        return trace("truncate", f, newLength, 0, () -> super.truncate(f, newLength));
+    }
+
+    @Override
+    public FsStatus getStatus(Path p) throws IOException {
+        return trace("getStatus", p, 0, 0, () -> super.getStatus(p));
+    }
+
+    @Override
+    public byte[] getXAttr(Path path, String name) throws IOException {
+        return trace("getXAttr", path, 0, 0, () -> super.getXAttr(path, name));
+    }
+
+    @Override
+    public void setXAttr(Path path, String name, byte[] value, EnumSet<XAttrSetFlag> flag) throws IOException {
+        trace("setXAttr", path, value.length, 0, () -> {
+            super.setXAttr(path, name, value, flag);
+            return null;
+        });
+    }
+
+    @Override
+    public void removeXAttr(Path path, String name) throws IOException {
+        trace("removeXAttr", path, 0, 0, () -> {
+            super.removeXAttr(path, name);
+            return null;
+        });
+    }
+
+    /**
+     * Also forwards the optional interfaces of HDFS streams, callers check them before using faster read paths.
+     */
+    static class TracingInputStream extends FSInputStream
+            implements ByteBufferReadable, ByteBufferPositionedReadable, CanUnbuffer, StreamCapabilities {
+        private final FSDataInputStream in;
+        private final Path path;
+
+        TracingInputStream(FSDataInputStream in, Path path) {
+            this.in = in;
+            this.path = path;
+        }
+
+        FSDataInputStream getWrappedStream() {
+            return in;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return in.read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return trace("read", path, len, in.getPos(), () -> in.read(b, off, len));
+        }
+
+        @Override
+        public int read(long position, byte[] buffer, int offset, int length) throws IOException {
+            return trace("pread", path, length, position, () -> in.read(position, buffer, offset, length));
+        }
+
+        @Override
+        public int read(ByteBuffer buf) throws IOException {
+            return trace("read", path, buf.remaining(), in.getPos(), () -> in.read(buf));
+        }
+
+        @Override
+        public int read(long position, ByteBuffer buf) throws IOException {
+            return trace("pread", path, buf.remaining(), position, () -> in.read(position, buf));
+        }
+
+        @Override
+        public void readFully(long position, ByteBuffer buf) throws IOException {
+            trace("pread", path, buf.remaining(), position, () -> {
+                in.readFully(position, buf);
+                return null;
+            });
+        }
+
+        @Override
+        public void unbuffer() {
+            in.unbuffer();
+        }
+
+        @Override
+        public boolean hasCapability(String capability) {
+            return switch (capability.toLowerCase()) {
+                case StreamCapabilities.READBYTEBUFFER, StreamCapabilities.PREADBYTEBUFFER, StreamCapabilities.UNBUFFER ->
+                        in.hasCapability(capability);
+                default -> false;
+            };
+        }
+
+        @Override
+        public void seek(long pos) throws IOException {
+            in.seek(pos);
+        }
+
+        @Override
+        public long getPos() throws IOException {
+            return in.getPos();
+        }
+
+        @Override
+        public boolean seekToNewSource(long targetPos) throws IOException {
+            return in.seekToNewSource(targetPos);
+        }
+
+        @Override
+        public int available() throws IOException {
+            return in.available();
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    static class TracingOutputStream extends FilterOutputStream implements Syncable, StreamCapabilities {
+        private final FSDataOutputStream out;
+        private final Path path;
+
+        TracingOutputStream(FSDataOutputStream out, Path path) {
+            super(out);
+            this.out = out;
+            this.path = path;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public boolean hasCapability(String capability) {
+            return switch (capability.toLowerCase()) {
+                // StreamCapabilities.HFLUSH is deprecated, its value is the key
+                case "hflush", StreamCapabilities.HSYNC -> out.hasCapability(capability);
+                default -> false;
+            };
+        }
+
+        @Override
+        public void hflush() throws IOException {
+            trace("hflush", path, 0, out.getPos(), () -> {
+                out.hflush();
+                return null;
+            });
+        }
+
+        @Override
+        public void hsync() throws IOException {
+            trace("hsync", path, 0, out.getPos(), () -> {
+                out.hsync();
+                return null;
+            });
+        }
+
+        @Override
+        public void close() throws IOException {
+            trace("close", path, 0, out.getPos(), () -> {
+                out.close();
+                return null;
+            });
+        }
+    }
+
+}
@@ -0,0 +1,46 @@
+package org.apache.hadoop.hdfs;
+
+import org.apache.hadoop.hdfs.protocol.DatanodeInfo;
+import org.apache.hadoop.hdfs.protocol.LocatedBlock;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Access to the replica choice of {@link DFSInputStream}, which is only open to its own package.
+ */
+public final class DFSReplicas {
+
+    private DFSReplicas() {
+    }
+
+    /**
+     * The DataNode a positional read at this position goes to, or null when its block has a single replica.
+     */
+    public static DatanodeInfo chosenNode(DFSInputStream in, long position) throws IOException {
+        LocatedBlock block = in.getBlockAt(position);
+        if (block.getLocations().length < 2) {
+            return null;
+        }
+        var chosen = in.getBestNodeDNAddrPair(block, List.of());
+        return chosen == null ? null : chosen.info;
+    }
+
+    /**
+     * Keeps the stream away from this DataNode until {@link #include} is called.
+     *
+     * @return false if the stream already avoided it
+     */
+    public static boolean exclude(DFSInputStream in, DatanodeInfo node) {
+        if (in.getLocalDeadNodes().containsKey(node)) {
+            return false;
+        }
+        in.addToLocalDeadNodes(node);
+        return true;
+    }
+
+    public static void include(DFSInputStream in, DatanodeInfo node) {
+        in.removeFromLocalDeadNodes(node);
+    }
+
+}
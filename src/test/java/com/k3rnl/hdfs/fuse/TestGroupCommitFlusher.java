@@ -0,0 +1,199 @@
+package com.k3rnl.hdfs.fuse;
+
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.Syncable;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TestGroupCommitFlusher {
+
+    private static final ExecutorService CALLERS = Executors.newCachedThreadPool(Thread.ofPlatform().daemon().factory());
+
+    public static void main(String[] args) throws Exception {
+        batching();
+        errorFanOut();
+        fsyncBatching();
+        closeWhileSyncing();
+        System.out.println("Group commit tests passed");
+    }
+
+    /**
+     * Flushes received within the window sync each stream once.
+     */
+    private static void batching() throws Exception {
+        var a = new SyncCounter();
+        var b = new SyncCounter();
+        try (var flusher = new GroupCommitFlusher(GroupCommitFlusher.Durability.HFLUSH, Duration.ofMillis(200))) {
+            List<Future<Void>> flushes = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                flushes.add(flushAsync(flusher, i % 2 == 0 ? a.stream() : b.stream()));
+            }
+            for (var flush : flushes) {
+                flush.get(5, TimeUnit.SECONDS);
+            }
+        }
+        if (a.syncs.get() != 1 || b.syncs.get() != 1) {
+            throw new AssertionError("20 flushes on 2 streams made " + a.syncs + " and " + b.syncs + " syncs instead of 1");
+        }
+    }
+
+    /**
+     * Fsyncs are batched with the flushes of their stream and hsync it, whatever the durability policy.
+     */
+    private static void fsyncBatching() throws Exception {
+        var a = new SyncCounter();
+        var b = new SyncCounter();
+        try (var flusher = new GroupCommitFlusher(GroupCommitFlusher.Durability.HFLUSH, Duration.ofMillis(200))) {
+            List<Future<Void>> syncs = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                syncs.add(i % 2 == 0 ? flushAsync(flusher, a.stream()) : fsyncAsync(flusher, a.stream()));
+                syncs.add(flushAsync(flusher, b.stream()));
+            }
+            for (var sync : syncs) {
+                sync.get(5, TimeUnit.SECONDS);
+            }
+        }
+        if (a.syncs.get() != 1 || a.hsyncs.get() != 1 || b.hsyncs.get() != 0) {
+            throw new AssertionError("Flushes and fsyncs made " + a.syncs + " syncs with " + a.hsyncs
+                    + " hsyncs, and flushes alone " + b.hsyncs + " hsyncs");
+        }
+
+        var unflushed = new SyncCounter();
+        try (var flusher = new GroupCommitFlusher(GroupCommitFlusher.Durability.NONE, Duration.ofMillis(10))) {
+            fsyncAsync(flusher, unflushed.stream()).get(5, TimeUnit.SECONDS);
+        }
+        if (unflushed.hsyncs.get() != 1) {
+            throw new AssertionError("Fsync made " + unflushed.hsyncs + " hsyncs without flush durability");
+        }
+    }
+
+    /**
+     * A failed sync fails every flush of its stream, and only those.
+     */
+    private static void errorFanOut() throws Exception {
+        var failing = new SyncCounter();
+        failing.failure = new IOException("Pipeline broken");
+        var healthy = new SyncCounter();
+        try (var flusher = new GroupCommitFlusher(GroupCommitFlusher.Durability.HSYNC, Duration.ofMillis(200))) {
+            List<Future<Void>> failed = new ArrayList<>();
+            List<Future<Void>> succeeded = new ArrayList<>();
+            for (int i = 0; i < 5; i++) {
+                failed.add(flushAsync(flusher, failing.stream()));
+                succeeded.add(flushAsync(flusher, healthy.stream()));
+            }
+            for (var flush : failed) {
+                try {
+                    flush.get(5, TimeUnit.SECONDS);
+                    throw new AssertionError("Flush succeeded although its sync failed");
+                } catch (ExecutionException e) {
+                    if (!(e.getCause() instanceof IOException) || !e.getCause().getMessage().equals("Pipeline broken")) {
+                        throw new AssertionError("Unexpected flush failure", e.getCause());
+                    }
+                }
+            }
+            for (var flush : succeeded) {
+                flush.get(5, TimeUnit.SECONDS);
+            }
+        }
+    }
+
+    /**
+     * Closing during a sync lets it complete its flushes, and flushes after close fail instead of waiting.
+     */
+    private static void closeWhileSyncing() throws Exception {
+        var slow = new SyncCounter();
+        slow.started = new CountDownLatch(1);
+        slow.release = new CountDownLatch(1);
+        var flusher = new GroupCommitFlusher(GroupCommitFlusher.Durability.HFLUSH, Duration.ofMillis(10));
+        var flush = flushAsync(flusher, slow.stream());
+        if (!slow.started.await(5, TimeUnit.SECONDS)) {
+            throw new AssertionError("Sync did not start");
+        }
+
+        var closing = CompletableFuture.runAsync(flusher::close);
+        Thread.sleep(100);
+        slow.release.countDown();
+        closing.get(5, TimeUnit.SECONDS);
+        flush.get(5, TimeUnit.SECONDS);
+
+        try {
+            flushAsync(flusher, slow.stream()).get(5, TimeUnit.SECONDS);
+            throw new AssertionError("Flush succeeded after close");
+        } catch (ExecutionException e) {
+            if (!(e.getCause() instanceof IOException)) {
+                throw new AssertionError("Unexpected flush failure", e.getCause());
+            }
+        }
+    }
+
+    private static Future<Void> flushAsync(GroupCommitFlusher flusher, FSDataOutputStream out) {
+        return CompletableFuture.runAsync(() -> {
+            try {
+                flusher.flush(out);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, CALLERS);
+    }
+
+    private static Future<Void> fsyncAsync(GroupCommitFlusher flusher, FSDataOutputStream out) {
+        return CompletableFuture.runAsync(() -> {
+            try {
+                flusher.fsync(out);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, CALLERS);
+    }
+
+    private static class SyncCounter extends OutputStream implements Syncable {
+        final AtomicInteger syncs = new AtomicInteger();
+        final AtomicInteger hsyncs = new AtomicInteger();
+        IOException failure;
+        CountDownLatch started;
+        CountDownLatch release;
+
+        private final FSDataOutputStream stream = new FSDataOutputStream(this, null);
+
+        FSDataOutputStream stream() {
+            return stream;
+        }
+
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void hflush() throws IOException {
+            sync();
+        }
+
+        @Override
+        public void hsync() throws IOException {
+            hsyncs.incrementAndGet();
+            sync();
+        }
+
+        private void sync() throws IOException {
+            syncs.incrementAndGet();
+            if (started != null) {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new IOException("Interrupted while syncing", e);
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+
+}
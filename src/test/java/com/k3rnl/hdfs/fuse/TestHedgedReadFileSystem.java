@@ -0,0 +1,142 @@
+package com.k3rnl.hdfs.fuse;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.*;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TestHedgedReadFileSystem {
+
+    private static final int READ_SIZE = 4096;
+    private static final long SLOW_MILLIS = 2000;
+
+    public static void main(String[] args) throws Exception {
+        byte[] data = new byte[1024 * 1024];
+        new Random(42).nextBytes(data);
+        var file = Files.createTempFile("hedged-read", ".bin");
+        Files.write(file, data);
+
+        var slowFs = new SlowFirstStreamFileSystem(FileSystem.newInstanceLocal(new Configuration()));
+        try (var hedged = new HedgedReadFileSystem(slowFs, 95, 1, Duration.ofMillis(10));
+             var in = hedged.open(new Path(file.toUri()))) {
+            var random = new Random(42);
+            // enough reads for the latency window to have a threshold
+            for (int i = 0; i < 64; i++) {
+                check(in, data, random.nextInt(data.length - READ_SIZE));
+            }
+            if (slowFs.opened.get() != 1) {
+                throw new AssertionError("Reads were hedged while the primary stream was fast");
+            }
+
+            slowFs.slow = true;
+            for (int i = 0; i < 20; i++) {
+                long start = System.nanoTime();
+                check(in, data, random.nextInt(data.length - READ_SIZE));
+                long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                if (millis >= SLOW_MILLIS / 2) {
+                    throw new AssertionError("Read took " + millis + " ms with a slow primary stream");
+                }
+            }
+            if (slowFs.opened.get() != 2) {
+                throw new AssertionError("Hedged reads opened " + (slowFs.opened.get() - 1) + " streams instead of 1");
+            }
+
+            // sequential reads of a hedged stream go through positional reads, so they are hedged too
+            var buffered = new SeekableBufferedInputStream(in, READ_SIZE, 20);
+            long start = System.nanoTime();
+            byte[] read = buffered.readNBytes(8 * READ_SIZE);
+            long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            if (!Arrays.equals(read, 0, read.length, data, 0, read.length)) {
+                throw new AssertionError("Read different data sequentially");
+            }
+            if (millis >= SLOW_MILLIS / 2) {
+                throw new AssertionError("Sequential reads took " + millis + " ms with a slow primary stream");
+            }
+        } finally {
+            Files.delete(file);
+        }
+        System.out.println("Hedged read tests passed");
+    }
+
+    private static void check(FSDataInputStream in, byte[] data, int position) throws IOException {
+        byte[] read = new byte[READ_SIZE];
+        int count = in.read(position, read, 0, READ_SIZE);
+        if (count != READ_SIZE || !Arrays.equals(read, 0, count, data, position, position + count)) {
+            throw new AssertionError("Read different data at " + position);
+        }
+    }
+
+    /**
+     * The first stream opened becomes slow once {@link #slow} is set, like a stream reading from a slow DataNode.
+     */
+    private static class SlowFirstStreamFileSystem extends FilterFileSystem {
+        final AtomicInteger opened = new AtomicInteger();
+        volatile boolean slow;
+
+        SlowFirstStreamFileSystem(FileSystem fs) {
+            super(fs);
+            setConf(fs.getConf());
+        }
+
+        @Override
+        public FSDataInputStream open(Path f, int bufferSize) throws IOException {
+            boolean first = opened.getAndIncrement() == 0;
+            return new FSDataInputStream(new SlowInputStream(fs.open(f, bufferSize), first));
+        }
+
+        private class SlowInputStream extends FSInputStream {
+            private final FSDataInputStream in;
+            private final boolean first;
+
+            SlowInputStream(FSDataInputStream in, boolean first) {
+                this.in = in;
+                this.first = first;
+            }
+
+            @Override
+            public int read(long position, byte[] buffer, int offset, int length) throws IOException {
+                if (first && slow) {
+                    try {
+                        Thread.sleep(SLOW_MILLIS);
+                    } catch (InterruptedException e) {
+                        throw new InterruptedIOException();
+                    }
+                }
+                return in.read(position, buffer, offset, length);
+            }
+
+            @Override
+            public int read() throws IOException {
+                return in.read();
+            }
+
+            @Override
+            public void seek(long pos) throws IOException {
+                in.seek(pos);
+            }
+
+            @Override
+            public long getPos() throws IOException {
+                return in.getPos();
+            }
+
+            @Override
+            public boolean seekToNewSource(long targetPos) {
+                return false;
+            }
+
+            @Override
+            public void close() throws IOException {
+                in.close();
+            }
+        }
+    }
+
+}
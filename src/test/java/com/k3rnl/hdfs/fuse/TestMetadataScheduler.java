@@ -0,0 +1,225 @@
+package com.k3rnl.hdfs.fuse;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class TestMetadataScheduler {
+
+    public static void main(String[] args) throws Exception {
+        classRate();
+        interactiveReserve();
+        chargedToOperation();
+        throttledOnAdmission();
+        fairness();
+        lookupsNotStarved();
+        maxThrottled();
+        System.out.println("Scheduler tests passed");
+    }
+
+    /**
+     * After the first second of burst, calls are sent at the rate of their class.
+     */
+    private static void classRate() throws InterruptedException {
+        var scheduler = new MetadataScheduler(Map.of(OpClass.LISTING, 100.0), 0, 0, Integer.MAX_VALUE);
+        long start = System.nanoTime();
+        for (int i = 0; i < 200; i++) {
+            scheduler.acquire(OpClass.LISTING);
+        }
+        expectBetween("200 listings at 100/s", millisSince(start), 900, 1300);
+
+        start = System.nanoTime();
+        for (int i = 0; i < 100; i++) {
+            scheduler.acquire(OpClass.LOOKUP);
+        }
+        expectBetween("100 unlimited lookups", millisSince(start), 0, 50);
+    }
+
+    /**
+     * Listings and mutations leave the reserve of the shared bucket to lookups.
+     */
+    private static void interactiveReserve() throws InterruptedException {
+        var scheduler = new MetadataScheduler(Map.of(), 100, 0.5, Integer.MAX_VALUE);
+        long start = System.nanoTime();
+        for (int i = 0; i < 50; i++) {
+            scheduler.acquire(OpClass.MUTATION);
+        }
+        for (int i = 0; i < 20; i++) {
+            scheduler.acquire(OpClass.LOOKUP);
+        }
+        expectBetween("50 mutations then 20 lookups from a full bucket", millisSince(start), 0, 50);
+
+        // 30 tokens left, a mutation needs 51
+        start = System.nanoTime();
+        scheduler.acquire(OpClass.MUTATION);
+        expectBetween("mutation below the reserve", millisSince(start), 150, 400);
+    }
+
+    /**
+     * Calls made by an admitted operation are sent without waiting and count against the class of the operation,
+     * delaying the next operations.
+     */
+    private static void chargedToOperation() throws InterruptedException {
+        var scheduler = new MetadataScheduler(Map.of(OpClass.MUTATION, 1.0), 0, 0, Integer.MAX_VALUE);
+        long start = System.nanoTime();
+        admit(scheduler, OpClass.MUTATION, OpClass.LOOKUP, OpClass.MUTATION);
+        expectBetween("a lookup and a mutation made by an admitted mutation", millisSince(start), 0, 50);
+
+        start = System.nanoTime();
+        admit(scheduler, OpClass.MUTATION);
+        expectBetween("next mutation at 1/s after two calls", millisSince(start), 1700, 2500);
+
+        // an operation without NameNode calls gives its token back
+        start = System.nanoTime();
+        admit(scheduler, OpClass.MUTATION);
+        expectBetween("mutation after one without calls", millisSince(start), 0, 50);
+    }
+
+    /**
+     * Operations fail when they are admitted, never after their first call was sent.
+     */
+    private static void throttledOnAdmission() throws InterruptedException {
+        var scheduler = new MetadataScheduler(Map.of(OpClass.MUTATION, 1.0), 0, 0, 0);
+        admit(scheduler, OpClass.MUTATION, OpClass.LOOKUP, OpClass.MUTATION, OpClass.MUTATION);
+        try {
+            admit(scheduler, OpClass.MUTATION);
+            throw new AssertionError("A mutation was admitted while throttled");
+        } catch (MetadataScheduler.ThrottledException e) {
+            // expected
+        }
+    }
+
+    /**
+     * Admits an operation making the given NameNode calls.
+     */
+    private static void admit(MetadataScheduler scheduler, OpClass opClass, OpClass... calls) throws InterruptedException {
+        scheduler.admit(opClass, () -> {
+            try {
+                for (var call : calls) {
+                    scheduler.acquire(call);
+                }
+            } catch (InterruptedException e) {
+                throw new AssertionError(e);
+            }
+            return 0;
+        });
+    }
+
+    /**
+     * Listings and mutations competing for the shared bucket get a similar share.
+     */
+    private static void fairness() throws Exception {
+        var scheduler = new MetadataScheduler(Map.of(), 200, 0.2, Integer.MAX_VALUE);
+        drain(scheduler, 200);
+        var listings = new AtomicLong();
+        var mutations = new AtomicLong();
+        var stop = new AtomicBoolean();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            threads.add(loop(scheduler, OpClass.LISTING, listings, stop));
+            threads.add(loop(scheduler, OpClass.MUTATION, mutations, stop));
+        }
+        Thread.sleep(2000);
+        stop.set(true);
+        for (var thread : threads) {
+            thread.join();
+        }
+        double ratio = (double) listings.get() / mutations.get();
+        if (ratio < 0.8 || ratio > 1.25) {
+            throw new AssertionError(listings + " listings for " + mutations + " mutations");
+        }
+        expectBetween("calls in 2s at 200/s", listings.get() + mutations.get(), 300, 450);
+    }
+
+    /**
+     * Lookups are served right away while listings and mutations saturate the shared bucket.
+     */
+    private static void lookupsNotStarved() throws Exception {
+        var scheduler = new MetadataScheduler(Map.of(), 200, 0.2, Integer.MAX_VALUE);
+        var stop = new AtomicBoolean();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            threads.add(loop(scheduler, OpClass.LISTING, new AtomicLong(), stop));
+            threads.add(loop(scheduler, OpClass.MUTATION, new AtomicLong(), stop));
+        }
+        Thread.sleep(200);
+        long slowest = 0;
+        for (int i = 0; i < 40; i++) {
+            long start = System.nanoTime();
+            scheduler.acquire(OpClass.LOOKUP);
+            slowest = Math.max(slowest, millisSince(start));
+            Thread.sleep(25);
+        }
+        stop.set(true);
+        for (var thread : threads) {
+            thread.join();
+        }
+        expectBetween("slowest lookup during a bulk load", slowest, 0, 20);
+    }
+
+    /**
+     * Past the maximum of waiting listings and mutations, calls fail instead of taking another loop thread.
+     */
+    private static void maxThrottled() throws Exception {
+        var scheduler = new MetadataScheduler(Map.of(OpClass.MUTATION, 1.0), 0, 0, 2);
+        scheduler.acquire(OpClass.MUTATION);
+        var waiting = Executors.newFixedThreadPool(2);
+        try {
+            List<Future<?>> waiters = new ArrayList<>();
+            for (int i = 0; i < 2; i++) {
+                waiters.add(waiting.submit(() -> {
+                    scheduler.acquire(OpClass.MUTATION);
+                    return null;
+                }));
+            }
+            Thread.sleep(200);
+            try {
+                scheduler.acquire(OpClass.MUTATION);
+                throw new AssertionError("A third mutation waited");
+            } catch (MetadataScheduler.ThrottledException e) {
+                // expected
+            }
+            long start = System.nanoTime();
+            scheduler.acquire(OpClass.LOOKUP);
+            expectBetween("lookup while mutations are throttled", millisSince(start), 0, 20);
+            for (var waiter : waiters) {
+                waiter.get(5, TimeUnit.SECONDS);
+            }
+        } finally {
+            waiting.shutdownNow();
+        }
+    }
+
+    private static Thread loop(MetadataScheduler scheduler, OpClass opClass, AtomicLong count, AtomicBoolean stop) {
+        return Thread.ofPlatform().start(() -> {
+            try {
+                while (!stop.get()) {
+                    scheduler.acquire(opClass);
+                    count.incrementAndGet();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+    }
+
+    private static void drain(MetadataScheduler scheduler, int tokens) throws InterruptedException {
+        for (int i = 0; i < tokens; i++) {
+            scheduler.acquire(OpClass.LOOKUP);
+        }
+    }
+
+    private static long millisSince(long start) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+    private static void expectBetween(String what, long value, long min, long max) {
+        if (value < min || value > max) {
+            throw new AssertionError(what + ": " + value + " is not between " + min + " and " + max);
+        }
+    }
+
+}
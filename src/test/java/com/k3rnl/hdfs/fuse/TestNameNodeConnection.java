@@ -0,0 +1,74 @@
+package com.k3rnl.hdfs.fuse;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.ipc.StandbyException;
+import org.apache.hadoop.security.AccessControlException;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+public class TestNameNodeConnection {
+
+    public static void main(String[] args) throws Exception {
+        classification();
+        fatalErrorFailsConnection();
+        connectTimeoutIsShared();
+        System.out.println("Connection tests passed");
+    }
+
+    private static void classification() {
+        expect(true, new ConnectException("Connection refused"));
+        expect(true, new IOException("Failed on local exception", new ConnectException("Connection refused")));
+        expect(true, new org.apache.hadoop.ipc.RemoteException(StandbyException.class.getName(), "Operation category READ is not supported in state standby"));
+        expect(false, new AccessControlException("Permission denied"));
+        expect(false, new IOException("Login failure"));
+        expect(false, new IllegalArgumentException("Malformed URI"));
+    }
+
+    private static void expect(boolean retriable, Exception e) {
+        if (NameNodeConnection.isRetriable(e) != retriable) {
+            throw new AssertionError(e + " should " + (retriable ? "" : "not ") + "be retried");
+        }
+    }
+
+    private static void fatalErrorFailsConnection() throws Exception {
+        var connection = NameNodeConnection.start(() -> {
+            Configuration conf = new Configuration();
+            conf.set("fs.defaultFS", "unknown://host:8020");
+            return FileSystem.newInstance(conf);
+        });
+        try {
+            connection.get(5, TimeUnit.SECONDS);
+            throw new AssertionError("Connected with an unknown scheme");
+        } catch (ExecutionException e) {
+            // failed without retrying
+        }
+    }
+
+    /**
+     * Once the timeout is over, operations fail at once instead of waiting for it again.
+     */
+    private static void connectTimeoutIsShared() {
+        var ops = new HdfsFuseOperations(new CompletableFuture<>(), Duration.ofMillis(500),
+                ConcurrencyLimiter.unlimited(), GroupCommitFlusher.perCall(GroupCommitFlusher.Durability.HFLUSH));
+        long first = timeMillis(ops);
+        long second = timeMillis(ops);
+        if (first < 400 || second > 100) {
+            throw new AssertionError("getattr waited " + first + " ms then " + second + " ms for the connection");
+        }
+    }
+
+    private static long timeMillis(HdfsFuseOperations ops) {
+        long start = System.nanoTime();
+        if (ops.getattr("/", status -> {}) >= 0) {
+            throw new AssertionError("getattr succeeded without a connection");
+        }
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+}
@@ -1,11 +1,15 @@
 package com.k3rnl.hdfs.fuse;
 
 import org.apache.avro.util.ByteBufferInputStream;
+import org.apache.hadoop.fs.PositionedReadable;
+import org.apache.hadoop.fs.Seekable;
 
 import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
 
 public class TestSeekableBufferedInputStream {
 
@@ -52,6 +56,143 @@ public class TestSeekableBufferedInputStream {
                 break;
             }
         }
+
+        seekAhead(new SeekableByteArrayInputStream(data));
+        seekAhead(new PositionedByteArrayInputStream(data));
+        crossBoundaries(new SeekableByteArrayInputStream(data));
+        crossBoundaries(new PositionedByteArrayInputStream(data));
+        randomSeeks(new PositionedByteArrayInputStream(data));
+        sequentialStreaming(new StreamingOnlyInputStream(data));
+        System.out.println("Seek tests passed");
+    }
+
+    private static final int PART_SIZE = 4096;
+
+    /**
+     * Seeks far past the loaded parts, then keeps reading sequentially from there.
+     */
+    private static void seekAhead(SeekableByteArrayInputStream in) throws IOException {
+        var stream = new SeekableBufferedInputStream(in, PART_SIZE, 20);
+        check(stream, in.data, 0, 100);
+        check(stream, in.data, 50L * PART_SIZE + 7, 100);
+        for (long position = 50L * PART_SIZE + 107; position < 60L * PART_SIZE; position += 1000) {
+            check(stream, in.data, position, 1000);
+        }
+        // the parts in between are loaded on demand
+        check(stream, in.data, 10L * PART_SIZE, 3 * PART_SIZE);
+        // sequential loads resume after the parts loaded out of order
+        check(stream, in.data, 3L * PART_SIZE, 8 * PART_SIZE);
+    }
+
+    /**
+     * Reads that start in a part and end in the next one, after seeks.
+     */
+    private static void crossBoundaries(SeekableByteArrayInputStream in) throws IOException {
+        var stream = new SeekableBufferedInputStream(in, PART_SIZE, 20);
+        check(stream, in.data, PART_SIZE - 10, 20);
+        check(stream, in.data, 5L * PART_SIZE - 1, 2);
+        check(stream, in.data, 2L * PART_SIZE - 100, 2 * PART_SIZE + 200);
+        check(stream, in.data, 30L * PART_SIZE - 5, 10);
+        check(stream, in.data, in.data.length - 10, 10);
+    }
+
+    private static void randomSeeks(SeekableByteArrayInputStream in) throws IOException {
+        var stream = new SeekableBufferedInputStream(in, PART_SIZE, 20);
+        var random = new Random(42);
+        for (int i = 0; i < 10000; i++) {
+            long position = random.nextInt(200 * PART_SIZE);
+            check(stream, in.data, position, 1 + random.nextInt(3 * PART_SIZE));
+        }
+    }
+
+    /**
+     * Sequential parts of a positioned stream are loaded with streaming reads, only hedged streams use positional reads.
+     */
+    private static void sequentialStreaming(SeekableByteArrayInputStream in) throws IOException {
+        var stream = new SeekableBufferedInputStream(in, PART_SIZE, 20);
+        for (long position = 0; position < 40L * PART_SIZE; position += 1000) {
+            check(stream, in.data, position, 1000);
+        }
+    }
+
+    private static void check(SeekableBufferedInputStream stream, byte[] data, long position, int length) throws IOException {
+        byte[] read = new byte[length];
+        stream.seek(position);
+        int count = stream.readNBytes(read, 0, length);
+        int expected = (int) Math.min(length, data.length - position);
+        if (count != expected) {
+            throw new AssertionError("Read " + count + " bytes at " + position + " instead of " + expected);
+        }
+        if (!Arrays.equals(read, 0, count, data, (int) position, (int) position + count)) {
+            throw new AssertionError("Read different data at " + position + " for " + length + " bytes");
+        }
+        if (stream.getPos() != position + count) {
+            throw new AssertionError("Position is " + stream.getPos() + " instead of " + (position + count));
+        }
+    }
+
+    private static class SeekableByteArrayInputStream extends ByteArrayInputStream implements Seekable {
+        final byte[] data;
+
+        SeekableByteArrayInputStream(byte[] data) {
+            super(data);
+            this.data = data;
+        }
+
+        @Override
+        public synchronized void seek(long pos) {
+            this.pos = (int) pos;
+        }
+
+        @Override
+        public synchronized long getPos() {
+            return pos;
+        }
+
+        @Override
+        public boolean seekToNewSource(long targetPos) {
+            return false;
+        }
+    }
+
+    private static class PositionedByteArrayInputStream extends SeekableByteArrayInputStream implements PositionedReadable {
+        PositionedByteArrayInputStream(byte[] data) {
+            super(data);
+        }
+
+        @Override
+        public int read(long position, byte[] buffer, int offset, int length) {
+            if (position >= data.length) {
+                return -1;
+            }
+            int read = (int) Math.min(length, data.length - position);
+            System.arraycopy(data, (int) position, buffer, offset, read);
+            return read;
+        }
+
+        @Override
+        public void readFully(long position, byte[] buffer, int offset, int length) throws IOException {
+            if (read(position, buffer, offset, length) < length) {
+                throw new java.io.EOFException();
+            }
+        }
+
+        @Override
+        public void readFully(long position, byte[] buffer) throws IOException {
+            readFully(position, buffer, 0, buffer.length);
+        }
+    }
+
+
+    private static class StreamingOnlyInputStream extends PositionedByteArrayInputStream {
+        StreamingOnlyInputStream(byte[] data) {
+            super(data);
+        }
+
+        @Override
+        public int read(long position, byte[] buffer, int offset, int length) {
+            throw new AssertionError("Positional read for a sequential part");
+        }
     }
 
 }